@@ -0,0 +1,45 @@
+package com.example.arabicbot.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Проверка прав админа, которая выполняется на /start, /menu и в админских сценариях
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BotConfigBenchmark {
+
+    private final BotConfig botConfig = new BotConfig();
+    private Long adminId;
+    private Long userId;
+
+    @Setup
+    public void setUp() {
+        botConfig.setAdminIds("1333826852,641422237,964360983,2142553605");
+        adminId = 2142553605L;
+        userId = 123456789L;
+    }
+
+    @Benchmark
+    public boolean isAdminForAdmin() {
+        return botConfig.isAdmin(adminId);
+    }
+
+    @Benchmark
+    public boolean isAdminForUser() {
+        return botConfig.isAdmin(userId);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.arabicbot.handler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Разбор callback_data, как в TelegramBotHandler.handleCallbackQuery: кнопка ответа в компактном
+// и в старом текстовом формате, затем поиск маршрута. Обработчик маршрута пустой.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallbackBenchmark {
+
+    private final CallbackCodec codec = new CallbackCodec();
+    private final DecodedCallback callback = new DecodedCallback();
+    private UpdateRouter router;
+    private String compactAnswer;
+    private String legacyAnswer;
+
+    @Setup
+    public void setUp() {
+        compactAnswer = codec.answer(42, 1_000, 10_001, 17);
+        legacyAnswer = "answer:42:1000:10001:10003,10000,10001,10002";
+        router = new UpdateRouter(new SimpleMeterRegistry());
+        router.callback(CallbackAction.ANSWER, (chatId, userId, messageId, decoded) -> { });
+    }
+
+    @Benchmark
+    public boolean decodeCompact() {
+        return codec.decode(compactAnswer, callback);
+    }
+
+    @Benchmark
+    public boolean decodeLegacy() {
+        return codec.decode(legacyAnswer, callback);
+    }
+
+    @Benchmark
+    public void decodeAndRoute(Blackhole blackhole) {
+        codec.decode(compactAnswer, callback);
+        blackhole.consume(router.routeCallback(callback, 1L, 1L, 1));
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.arabicbot.handler;
+
+import com.example.arabicbot.service.BenchmarkFixtures;
+import com.example.arabicbot.service.LessonCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Страница списка уроков (sendLessonsList) для каталогов разного размера: первая сборка страницы
+// после изменения каталога и повторный показ из LessonListPageCache
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LessonListBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int lessonCount;
+
+    private final CallbackCodec codec = new CallbackCodec();
+    private LessonCatalog catalog;
+    private LessonListPageCache warmCache;
+    private int lastPage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalog = BenchmarkFixtures.lessonCatalog(lessonCount);
+        warmCache = new LessonListPageCache(catalog, codec);
+        warmCache.getPage("list", 0);
+        lastPage = (lessonCount - 1) / LessonListPageCache.PAGE_SIZE;
+    }
+
+    // Новый кэш на каждый вызов — как первый показ после перестройки каталога
+    @Benchmark
+    public LessonListPageCache.LessonListPage renderFirstPage() {
+        return new LessonListPageCache(catalog, codec).getPage("list", 0);
+    }
+
+    @Benchmark
+    public LessonListPageCache.LessonListPage renderLastAdminPage() {
+        return new LessonListPageCache(catalog, codec).getPage("admin", lastPage);
+    }
+
+    @Benchmark
+    public LessonListPageCache.LessonListPage cachedFirstPage() {
+        return warmCache.getPage("list", 0);
+    }
+}
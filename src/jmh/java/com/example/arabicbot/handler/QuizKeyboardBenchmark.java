@@ -0,0 +1,49 @@
+package com.example.arabicbot.handler;
+
+import com.example.arabicbot.service.BenchmarkFixtures;
+import com.example.arabicbot.service.QuizPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Клавиатуры вопроса теста: перемешивание ответов и сборка кнопок (sendTestQuestion) и восстановление
+// порядка показа по номеру перестановки с отметками результата (updateQuestionMessageWithResults)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuizKeyboardBenchmark {
+
+    private final Keyboards keyboards = new Keyboards(new CallbackCodec(), BenchmarkFixtures.lessonCatalog(0));
+    private final SplittableRandom permutations = new SplittableRandom(7);
+    private QuizPlan plan;
+
+    @Setup
+    public void setUp() {
+        plan = BenchmarkFixtures.quizPlan(10);
+    }
+
+    @Benchmark
+    public InlineKeyboardMarkup questionKeyboard() {
+        return keyboards.question(plan, 3, ThreadLocalRandom.current());
+    }
+
+    @Benchmark
+    public InlineKeyboardMarkup answeredQuestionKeyboard() {
+        return keyboards.answeredQuestion(plan, 3, 2, permutations.nextInt(CallbackCodec.PERMUTATIONS));
+    }
+}
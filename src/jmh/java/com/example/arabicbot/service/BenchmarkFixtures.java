@@ -0,0 +1,58 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.dto.LessonView;
+import com.example.arabicbot.handler.CallbackCodec;
+import com.example.arabicbot.repository.LessonRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+// Данные для бенчмарков без Spring и БД. Лежит в пакете service, чтобы собирать QuizPlan
+// и CatalogSnapshot через их package-private конструкторы.
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    // План урока с questionCount вопросами по 4 ответа; правильный ответ — второй
+    public static QuizPlan quizPlan(int questionCount) {
+        long[] questionIds = new long[questionCount];
+        String[] questionTexts = new String[questionCount];
+        long[][] answerIds = new long[questionCount][];
+        String[][] answerTexts = new String[questionCount][];
+        int[] correct = new int[questionCount];
+        long nextAnswerId = 10_000;
+        for (int q = 0; q < questionCount; q++) {
+            questionIds[q] = 1_000 + q;
+            questionTexts[q] = "Как переводится слово «كتاب»? (вопрос " + (q + 1) + ")";
+            answerIds[q] = new long[CallbackCodec.ANSWER_SLOTS];
+            answerTexts[q] = new String[CallbackCodec.ANSWER_SLOTS];
+            for (int a = 0; a < CallbackCodec.ANSWER_SLOTS; a++) {
+                answerIds[q][a] = nextAnswerId++;
+                answerTexts[q][a] = "Вариант ответа " + (a + 1);
+            }
+            correct[q] = 1;
+        }
+        return new QuizPlan(42L, questionIds, questionTexts, answerIds, answerTexts, correct);
+    }
+
+    // Каталог из lessonCount уроков; репозиторий подменен заглушкой, которая отдает готовый список
+    public static LessonCatalog lessonCatalog(int lessonCount) {
+        List<LessonView> lessons = new ArrayList<>(lessonCount);
+        for (int i = 1; i <= lessonCount; i++) {
+            lessons.add(new LessonView((long) i, "Урок " + i + ": арабский алфавит", "Описание урока " + i, "video-" + i));
+        }
+        LessonRepository repository = (LessonRepository) Proxy.newProxyInstance(
+                LessonRepository.class.getClassLoader(), new Class<?>[]{LessonRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findAllViews")) {
+                        return lessons;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        LessonCatalog catalog = new LessonCatalog(repository);
+        catalog.rebuild();
+        return catalog;
+    }
+}
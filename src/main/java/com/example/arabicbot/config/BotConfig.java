@@ -19,6 +19,88 @@ public class BotConfig {
     @Value("${telegram.bot.admin.ids:}")
     private String adminIds;
 
+    // polling — long polling через DefaultBotSession, webhook — обновления приходят на HTTP-эндпоинт
+    @Value("${telegram.bot.mode:polling}")
+    private String mode;
+
+    @Value("${telegram.bot.webhook.url:}")
+    private String webhookUrl;
+
+    @Value("${telegram.bot.webhook.path:/telegram/webhook}")
+    private String webhookPath;
+
+    @Value("${telegram.bot.webhook.secret-token:}")
+    private String webhookSecretToken;
+
+    @Value("${telegram.bot.dispatcher.parallelism:8}")
+    private int dispatcherParallelism;
+
+    @Value("${telegram.bot.dispatcher.queue-capacity:10000}")
+    private int dispatcherQueueCapacity;
+
+    @Value("${telegram.bot.outbound.global-rate:30}")
+    private double outboundGlobalRate;
+
+    @Value("${telegram.bot.outbound.chat-rate:1}")
+    private double outboundChatRate;
+
+    @Value("${telegram.bot.outbound.chat-burst:3}")
+    private int outboundChatBurst;
+
+    @Value("${telegram.bot.outbound.max-retries:3}")
+    private int outboundMaxRetries;
+
+    @Value("${telegram.bot.outbound.sender-threads:8}")
+    private int outboundSenderThreads;
+
+    @Value("${telegram.bot.progress.flush-interval-ms:1000}")
+    private long progressFlushIntervalMs;
+
+    @Value("${telegram.bot.progress.flush-batch-size:500}")
+    private int progressFlushBatchSize;
+
+    @Value("${telegram.bot.progress.max-cached-users:100000}")
+    private int progressMaxCachedUsers;
+
+    @Value("${telegram.bot.stats.flush-interval-ms:1000}")
+    private long statsFlushIntervalMs;
+
+    @Value("${telegram.bot.stats.flush-batch-size:500}")
+    private int statsFlushBatchSize;
+
+    @Value("${telegram.bot.stats.max-cached-users:100000}")
+    private int statsMaxCachedUsers;
+
+    @Value("${telegram.bot.attempts.buffer-size:65536}")
+    private int attemptsBufferSize;
+
+    @Value("${telegram.bot.attempts.batch-size:1000}")
+    private int attemptsBatchSize;
+
+    @Value("${telegram.bot.attempts.flush-interval-ms:500}")
+    private long attemptsFlushIntervalMs;
+
+    @Value("${telegram.bot.attempts.max-retries:5}")
+    private int attemptsMaxRetries;
+
+    @Value("${telegram.bot.sessions.idle-ttl-minutes:60}")
+    private long sessionIdleTtlMinutes;
+
+    @Value("${telegram.bot.sessions.max-entries:10000}")
+    private int sessionMaxEntries;
+
+    @Value("${telegram.bot.sessions.journal-path:data/sessions.journal}")
+    private String sessionJournalPath;
+
+    @Value("${telegram.bot.sessions.journal-size-mb:16}")
+    private int sessionJournalSizeMb;
+
+    @Value("${telegram.bot.sessions.journal-sync-interval-ms:1000}")
+    private long sessionJournalSyncIntervalMs;
+
+    @Value("${telegram.bot.import.batch-size:500}")
+    private int importBatchSize;
+
     public List<Long> getAdminIdsList() {
         if (adminIds == null || adminIds.trim().isEmpty()) {
             return List.of();
@@ -30,6 +112,15 @@ public class BotConfig {
                 .toList();
     }
 
+    public boolean isWebhookMode() {
+        return isWebhookMode(mode);
+    }
+
+    // Общее правило для BotConfig и WebhookModeCondition
+    public static boolean isWebhookMode(String mode) {
+        return "webhook".equalsIgnoreCase(mode == null ? null : mode.trim());
+    }
+
     public boolean isAdmin(Long userId) {
         return getAdminIdsList().contains(userId);
     }
@@ -1,22 +1,47 @@
 package com.example.arabicbot.config;
 
 import com.example.arabicbot.handler.TelegramBotHandler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+@Slf4j
 @Configuration
+@RequiredArgsConstructor
 public class BotConfiguration {
 
+    private final BotConfig botConfig;
+
     @Bean
     public TelegramBotsApi telegramBotsApi(TelegramBotHandler botHandler) throws TelegramApiException {
         TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-        botsApi.registerBot(botHandler);
+        if (botConfig.isWebhookMode()) {
+            // Обновления принимает TelegramWebhookController, long polling не запускаем
+            registerWebhook(botHandler);
+        } else {
+            botsApi.registerBot(botHandler);
+        }
         // Инициализируем команды бота после регистрации
         botHandler.initializeBotCommands();
         return botsApi;
     }
-}
 
+    private void registerWebhook(TelegramBotHandler botHandler) throws TelegramApiException {
+        if (botConfig.getWebhookUrl() == null || botConfig.getWebhookUrl().isBlank()) {
+            throw new IllegalStateException("telegram.bot.webhook.url must be set in webhook mode");
+        }
+        // Без секрета эндпоинт принял бы обновления от кого угодно
+        if (botConfig.getWebhookSecretToken() == null || botConfig.getWebhookSecretToken().isBlank()) {
+            throw new IllegalStateException("telegram.bot.webhook.secret-token must be set in webhook mode");
+        }
+        SetWebhook setWebhook = new SetWebhook(botConfig.getWebhookUrl() + botConfig.getWebhookPath());
+        setWebhook.setSecretToken(botConfig.getWebhookSecretToken());
+        botHandler.execute(setWebhook);
+        log.info("Webhook registered at {}{}", botConfig.getWebhookUrl(), botConfig.getWebhookPath());
+    }
+}
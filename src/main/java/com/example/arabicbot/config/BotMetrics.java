@@ -0,0 +1,120 @@
+package com.example.arabicbot.config;
+
+import com.example.arabicbot.entity.CacheRegions;
+import com.example.arabicbot.handler.LessonListPageCache;
+import com.example.arabicbot.handler.OutboundMessageQueue;
+import com.example.arabicbot.handler.UpdateDispatcher;
+import com.example.arabicbot.service.ConversationSessionStore;
+import com.example.arabicbot.service.DelayedActionScheduler;
+import com.example.arabicbot.service.LessonCatalog;
+import com.example.arabicbot.service.QuizAttemptLog;
+import com.example.arabicbot.service.QuizPlanService;
+import com.example.arabicbot.service.UserProgressService;
+import com.example.arabicbot.service.UserStatsService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+// Публикует счетчики и размеры очередей, которые компоненты уже ведут сами, как метрики Micrometer
+// (их снимает /actuator/prometheus). Значения читаются при каждом снятии, на горячем пути ничего не меняется.
+// Таймеры горячих путей регистрируют сами компоненты: bot.updates, bot.route, telegram.requests,
+// telegram.queue.wait, bot.db.batch.
+@Component
+@RequiredArgsConstructor
+public class BotMetrics implements MeterBinder {
+
+    private final ConversationSessionStore sessionStore;
+    private final UpdateDispatcher updateDispatcher;
+    private final OutboundMessageQueue outboundMessageQueue;
+    private final UserProgressService userProgressService;
+    private final UserStatsService userStatsService;
+    private final QuizAttemptLog quizAttemptLog;
+    private final QuizPlanService quizPlanService;
+    private final LessonCatalog lessonCatalog;
+    private final LessonListPageCache lessonListPageCache;
+    private final DelayedActionScheduler delayedActionScheduler;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // Сценарии создания и редактирования уроков
+        gauge(registry, "bot.sessions.active", sessionStore, ConversationSessionStore::getActiveSessions);
+        counter(registry, "bot.sessions", "event", "created", sessionStore, ConversationSessionStore::getCreatedSessions);
+        counter(registry, "bot.sessions", "event", "expired", sessionStore, ConversationSessionStore::getExpiredSessions);
+        counter(registry, "bot.sessions", "event", "evicted", sessionStore, ConversationSessionStore::getEvictedSessions);
+
+        // Очередь входящих обновлений
+        gauge(registry, "bot.dispatcher.queued", updateDispatcher, UpdateDispatcher::getQueuedTasks);
+        gauge(registry, "bot.dispatcher.mailboxes", updateDispatcher, UpdateDispatcher::getActiveMailboxes);
+        counter(registry, "bot.dispatcher.tasks", "outcome", "processed", updateDispatcher, UpdateDispatcher::getProcessedTasks);
+        counter(registry, "bot.dispatcher.tasks", "outcome", "rejected", updateDispatcher, UpdateDispatcher::getRejectedTasks);
+        counter(registry, "bot.dispatcher.tasks", "outcome", "failed", updateDispatcher, UpdateDispatcher::getFailedTasks);
+
+        // Исходящие запросы к Telegram
+        gauge(registry, "telegram.queue.size", outboundMessageQueue, OutboundMessageQueue::getQueuedRequests);
+        gauge(registry, "telegram.requests.in_flight", outboundMessageQueue, OutboundMessageQueue::getInFlightRequests);
+
+        // Отложенная запись прогресса и статистики, журнал попыток
+        gauge(registry, "bot.progress.cached_users", userProgressService, UserProgressService::getCachedUsers);
+        gauge(registry, "bot.progress.pending_writes", userProgressService, UserProgressService::getPendingWrites);
+        gauge(registry, "bot.stats.cached_users", userStatsService, UserStatsService::getCachedUsers);
+        gauge(registry, "bot.stats.pending_writes", userStatsService, UserStatsService::getPendingWrites);
+        gauge(registry, "bot.attempts.buffered", quizAttemptLog, QuizAttemptLog::getBufferedAttempts);
+        counter(registry, "bot.attempts", "outcome", "written", quizAttemptLog, QuizAttemptLog::getWrittenAttempts);
+        counter(registry, "bot.attempts", "outcome", "dropped", quizAttemptLog, QuizAttemptLog::getDroppedAttempts);
+        counter(registry, "bot.attempts.batches", "outcome", "failed", quizAttemptLog, QuizAttemptLog::getFailedBatches);
+
+        // Кэши в памяти
+        gauge(registry, "bot.quiz_plans.cached", quizPlanService, QuizPlanService::getCachedPlans);
+        counter(registry, "bot.cache.requests", "cache", "quiz_plans", "hit", quizPlanService, QuizPlanService::getHits);
+        counter(registry, "bot.cache.requests", "cache", "quiz_plans", "miss", quizPlanService, QuizPlanService::getMisses);
+        counter(registry, "bot.cache.requests", "cache", "lesson_pages", "hit", lessonListPageCache, LessonListPageCache::getHits);
+        counter(registry, "bot.cache.requests", "cache", "lesson_pages", "miss", lessonListPageCache, LessonListPageCache::getMisses);
+        FunctionCounter.builder("bot.catalog.rebuilds", lessonCatalog, LessonCatalog::getRebuilds)
+                .register(registry);
+        gauge(registry, "bot.catalog.last_rebuild_ms", lessonCatalog, LessonCatalog::getLastRebuildMs);
+        gauge(registry, "bot.scheduler.scheduled", delayedActionScheduler, DelayedActionScheduler::getScheduledActions);
+
+        // Кэш второго уровня Hibernate по регионам; без профиля metrics статистика выключена и счетчики равны нулю
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (String region : CacheRegions.ALL) {
+            counter(registry, "hibernate.second.level.cache.requests", "region", region, "hit",
+                    statistics, stats -> regionCount(stats, region, CacheRegionStatistics::getHitCount));
+            counter(registry, "hibernate.second.level.cache.requests", "region", region, "miss",
+                    statistics, stats -> regionCount(stats, region, CacheRegionStatistics::getMissCount));
+        }
+    }
+
+    private static <T> void gauge(MeterRegistry registry, String name, T source, ToDoubleFunction<T> value) {
+        Gauge.builder(name, source, value).register(registry);
+    }
+
+    private static <T> void counter(MeterRegistry registry, String name, String tag, String tagValue,
+                                    T source, ToDoubleFunction<T> value) {
+        FunctionCounter.builder(name, source, value).tag(tag, tagValue).register(registry);
+    }
+
+    // Счетчики обращений к кэшу: тег cache/region плюс result=hit|miss
+    private static <T> void counter(MeterRegistry registry, String name, String tag, String tagValue, String result,
+                                    T source, ToDoubleFunction<T> value) {
+        FunctionCounter.builder(name, source, value)
+                .tag(tag, tagValue)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static double regionCount(Statistics statistics, String region, ToLongFunction<CacheRegionStatistics> count) {
+        CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+        return regionStatistics != null ? count.applyAsLong(regionStatistics) : 0;
+    }
+}
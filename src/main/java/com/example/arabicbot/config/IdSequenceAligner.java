@@ -0,0 +1,38 @@
+package com.example.arabicbot.config;
+
+import com.example.arabicbot.entity.IdSequences;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Раньше id выдавались identity-колонками, и последовательности, созданные ddl-auto, начинаются с 1.
+// При старте сдвигаем каждую последовательность за максимальный существующий id, иначе новые
+// вставки упрутся в уже занятые id. EntityManagerFactory в зависимостях гарантирует, что схема уже обновлена.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdSequenceAligner {
+
+    private final JdbcTemplate jdbcTemplate;
+    @SuppressWarnings("unused")
+    private final EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void align() {
+        for (String[] table : IdSequences.TABLES) {
+            // С оптимизатором pooled значение последовательности — верхняя граница выданного блока,
+            // поэтому setval(max) дает следующему блоку id начиная с max + 1
+            List<Long> aligned = jdbcTemplate.queryForList(
+                    "SELECT setval('" + table[1] + "', m) FROM (SELECT MAX(id) AS m FROM " + table[0] + ") t " +
+                    "WHERE m IS NOT NULL AND m >= (SELECT last_value FROM " + table[1] + ")", Long.class);
+            if (!aligned.isEmpty()) {
+                log.info("Advanced sequence {} past existing {} ids to {}", table[1], table[0], aligned.get(0));
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.arabicbot.config;
+
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+// Включает бины webhook-режима по тому же правилу, что и BotConfig.isWebhookMode()
+// (значение telegram.bot.mode без учета регистра), чтобы эндпоинт и регистрация вебхука не расходились.
+public class WebhookModeCondition implements Condition {
+
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        return BotConfig.isWebhookMode(context.getEnvironment().getProperty("telegram.bot.mode", "polling"));
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.arabicbot.dto;
+
+// Ответ на вопрос теста для экранов редактирования: читается DTO-проекцией, без сущности
+public record AnswerView(Long id, String text, boolean correct) {
+}
@@ -0,0 +1,7 @@
+package com.example.arabicbot.dto;
+
+// Одна строка выгрузки каталога: урок + вопрос + ответ. Вопрос и ответ null, если их у урока нет.
+public record CatalogExportRow(Long lessonId, String title, String description, String videoFileId,
+                               Long questionId, String question, Long answerId, String answerText,
+                               Boolean correct) {
+}
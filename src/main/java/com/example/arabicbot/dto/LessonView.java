@@ -0,0 +1,5 @@
+package com.example.arabicbot.dto;
+
+// Неизменяемое представление урока для чтения, без привязки к контексту персистентности
+public record LessonView(Long id, String title, String description, String videoFileId) {
+}
@@ -0,0 +1,5 @@
+package com.example.arabicbot.dto;
+
+// Вопрос теста для экранов редактирования: читается DTO-проекцией, без сущности
+public record QuestionView(Long id, String question) {
+}
@@ -0,0 +1,5 @@
+package com.example.arabicbot.dto;
+
+// Строка выгрузки прогресса пользователя
+public record UserProgressRow(Long userId, Long currentLessonId, Long lastAnsweredQuestionId) {
+}
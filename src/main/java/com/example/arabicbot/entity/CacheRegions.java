@@ -0,0 +1,23 @@
+package com.example.arabicbot.entity;
+
+// Регионы кэша второго уровня для контента. Размеры регионов задаются в caffeine-jcache.conf (Caffeine JCache),
+// hit/miss по каждому региону — Statistics.getCacheRegionStatistics(имя региона).
+public final class CacheRegions {
+
+    public static final String LESSONS = "lessons";
+    public static final String LESSON_QUESTIONS = "lesson_questions";
+    public static final String QUESTIONS = "test_questions";
+    public static final String QUESTION_ANSWERS = "question_answers";
+    public static final String ANSWERS = "test_answers";
+
+    // Результаты кэшируемых запросов и метки изменения таблиц, по которым они сверяются
+    public static final String QUERY_RESULTS = "default-query-results-region";
+    public static final String UPDATE_TIMESTAMPS = "default-update-timestamps-region";
+
+    public static final String[] ALL = {
+            LESSONS, LESSON_QUESTIONS, QUESTIONS, QUESTION_ANSWERS, ANSWERS, QUERY_RESULTS, UPDATE_TIMESTAMPS
+    };
+
+    private CacheRegions() {
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.arabicbot.entity;
+
+// Последовательности id контента. Hibernate резервирует id блоками по ALLOCATION_SIZE (оптимизатор pooled),
+// поэтому урок с вопросами и ответами получает все id без обращений к БД и вставляется пачками.
+public final class IdSequences {
+
+    public static final int ALLOCATION_SIZE = 50;
+
+    // Таблица -> ее последовательность
+    public static final String[][] TABLES = {
+            {"lessons", "lessons_seq"},
+            {"test_questions", "test_questions_seq"},
+            {"test_answers", "test_answers_seq"}
+    };
+
+    private IdSequences() {
+    }
+}
@@ -2,19 +2,28 @@ package com.example.arabicbot.entity;
 
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 
 @Entity
 @Table(name = "test_questions")
-@Data
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.QUESTIONS)
+@Getter
+@Setter
+@ToString(exclude = {"lesson", "answers"})
 @NoArgsConstructor
 @AllArgsConstructor
 public class TestQuestion {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "test_questions_seq")
+    @SequenceGenerator(name = "test_questions_seq", sequenceName = "test_questions_seq", allocationSize = IdSequences.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -24,7 +33,10 @@ public class TestQuestion {
     @Column(nullable = false, length = 1000)
     private String question;
 
-    @OneToMany(mappedBy = "question", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    // Ответы подгружаются только явно: TestQuestionRepository.findWithAnswersByLessonId
+    @OneToMany(mappedBy = "question", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OrderBy("id")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.QUESTION_ANSWERS)
     private List<TestAnswer> answers;
 }
 
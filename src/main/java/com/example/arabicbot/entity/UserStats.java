@@ -0,0 +1,50 @@
+package com.example.arabicbot.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDate;
+
+// Сводная статистика пользователя: обновляется на каждом ответе, а не считается по истории
+@Entity
+@Table(name = "user_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStats {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "current_lesson_id")
+    private Long currentLessonId;
+
+    @Column(name = "answers_total", nullable = false)
+    private long answersTotal;
+
+    @Column(name = "answers_correct", nullable = false)
+    private long answersCorrect;
+
+    @Column(name = "lessons_completed", nullable = false)
+    private long lessonsCompleted;
+
+    // Дней подряд с хотя бы одним ответом
+    @Column(name = "current_streak", nullable = false)
+    private int currentStreak;
+
+    @Column(name = "best_streak", nullable = false)
+    private int bestStreak;
+
+    @Column(name = "last_active_date")
+    private LocalDate lastActiveDate;
+
+    // Отсортированные id пройденных уроков: повторное прохождение не увеличивает lessonsCompleted.
+    // null — ни одного урока
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "completed_lesson_ids")
+    private long[] completedLessonIds;
+}
@@ -0,0 +1,76 @@
+package com.example.arabicbot.handler;
+
+// Действия inline-кнопок. tag — однобайтовый код действия в компактном формате callback_data,
+// arity — сколько чисел несет компактная кнопка, legacyName и legacyArgs описывают старый текстовый
+// формат ("lesson:12") для уже отправленных кнопок.
+// Теги — часть формата: у существующих действий их менять нельзя, новые действия получают новые теги.
+//
+// legacyArgs: n — число, L — тип списка уроков, E — действие редактирования,
+// O — необязательный порядок ответов (answerId через запятую)
+public enum CallbackAction {
+    LESSON('l', 1, "lesson", "n"),
+    ANSWER('a', 4, "answer", "nnnO"),
+    ANSWERED('x', 0, "answered", ""),
+    NEXT_LESSON('n', 0, "next_lesson", ""),
+    CHOOSE_LESSON('c', 0, "choose_lesson", ""),
+    LESSONS_PAGE('p', 2, "lessons_page", "Ln"),
+    EDIT_CANCEL('C', 0, "edit_cancel", ""),
+    EDIT_SKIP('S', 0, "edit_skip", ""),
+    EDIT_LESSON('e', 1, "edit_lesson", "n"),
+    EDIT_ACTION('E', 2, "edit_action", "En"),
+    EDIT_QUESTION_ANSWERS('q', 1, "edit_question_answers", "n"),
+    EDIT_QUESTION_CORRECT('Q', 1, "edit_question_correct", "n"),
+    EDIT_CORRECT('k', 2, "edit_correct", "nn"),
+    ADMIN_MENU('m', 0, "admin_menu", ""),
+    ADMIN_CREATE_LESSON('N', 0, "admin_create_lesson", ""),
+    ADMIN_EDIT_LESSON('M', 0, "admin_edit_lesson", ""),
+    ADMIN_DELETE_LESSON('D', 0, "admin_delete_lesson", ""),
+    ADMIN_LIST_LESSONS('L', 0, "admin_list_lessons", ""),
+    DELETE_LESSON('d', 1, "delete_lesson", "n"),
+    CONFIRM_DELETE('y', 1, "confirm_delete", "n"),
+    CANCEL_DELETE('z', 1, "cancel_delete", "n");
+
+    private static final CallbackAction[] BY_TAG = new CallbackAction[128];
+
+    static {
+        for (CallbackAction action : values()) {
+            if (BY_TAG[action.tag] != null) {
+                throw new IllegalStateException("Duplicate callback tag: " + action.tag);
+            }
+            BY_TAG[action.tag] = action;
+        }
+    }
+
+    private final char tag;
+    private final int arity;
+    private final String legacyName;
+    private final String legacyArgs;
+
+    CallbackAction(char tag, int arity, String legacyName, String legacyArgs) {
+        this.tag = tag;
+        this.arity = arity;
+        this.legacyName = legacyName;
+        this.legacyArgs = legacyArgs;
+    }
+
+    public char getTag() {
+        return tag;
+    }
+
+    // Сколько чисел несет компактная кнопка этого действия
+    public int getArity() {
+        return arity;
+    }
+
+    String getLegacyName() {
+        return legacyName;
+    }
+
+    String getLegacyArgs() {
+        return legacyArgs;
+    }
+
+    static CallbackAction byTag(char tag) {
+        return tag < BY_TAG.length ? BY_TAG[tag] : null;
+    }
+}
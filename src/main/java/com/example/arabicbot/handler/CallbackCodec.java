@@ -0,0 +1,353 @@
+package com.example.arabicbot.handler;
+
+import com.example.arabicbot.service.LessonEditState;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+// Компактный формат callback_data (Telegram ограничивает его 64 байтами):
+//   '~' (версия 1) + однобайтовый тег действия + аргументы в виде varint в алфавите base64url.
+// Каждый символ varint несет 5 бит значения и бит продолжения, поэтому id до 1023 занимает 2 символа,
+// а любой long — не больше 13. Порядок четырех ответов хранится одним номером перестановки (0..23).
+// Кнопки старого текстового формата ("answer:1:2:3:4,5,6,7") продолжают разбираться, пока такие
+// сообщения остаются в чатах; getLegacyDecodes() показывает, когда поддержку можно убирать.
+@Component
+public class CallbackCodec {
+
+    static final char FORMAT_V1 = '~';
+    static final int MAX_LENGTH = 64;
+    public static final int ANSWER_SLOTS = 4;
+    static final int PERMUTATIONS = 24; // 4!
+
+    // Коды аргументов-перечислений, индекс в массиве — значение в кнопке
+    static final String[] LIST_TYPES = {"list", "admin", "edit", "delete"};
+    static final LessonEditState.EditAction[] EDIT_ACTIONS = {
+            LessonEditState.EditAction.CHANGE_TITLE,
+            LessonEditState.EditAction.CHANGE_VIDEO,
+            LessonEditState.EditAction.CHANGE_DESCRIPTION,
+            LessonEditState.EditAction.EDIT_ANSWERS,
+            LessonEditState.EditAction.CHANGE_CORRECT_ANSWER
+    };
+    // Имена действий редактирования в старых кнопках, в том же порядке
+    private static final String[] LEGACY_EDIT_ACTIONS = {"title", "video", "description", "answers", "correct"};
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final byte[] DIGITS = new byte[128];
+    private static final int CONTINUATION = 0x20;
+    private static final int PAYLOAD_MASK = 0x1F;
+    private static final int[] FACTORIALS = {1, 1, 2, 6};
+    private static final CallbackAction[] ACTIONS = CallbackAction.values();
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DIGITS[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private final LongAdder compactDecodes = new LongAdder();
+    private final LongAdder legacyDecodes = new LongAdder();
+    private final LongAdder invalidCallbacks = new LongAdder();
+
+    public String encode(CallbackAction action) {
+        return builder(action, 0).toString();
+    }
+
+    public String encode(CallbackAction action, long arg) {
+        StringBuilder data = builder(action, 1);
+        appendVarint(data, arg);
+        return finish(data);
+    }
+
+    public String encode(CallbackAction action, long arg1, long arg2) {
+        StringBuilder data = builder(action, 2);
+        appendVarint(data, arg1);
+        appendVarint(data, arg2);
+        return finish(data);
+    }
+
+    public String answer(long lessonId, long questionId, long answerId, int permutation) {
+        StringBuilder data = builder(CallbackAction.ANSWER, 4);
+        appendVarint(data, lessonId);
+        appendVarint(data, questionId);
+        appendVarint(data, answerId);
+        appendVarint(data, permutation);
+        return finish(data);
+    }
+
+    public String lessonsPage(String listType, int page) {
+        return encode(CallbackAction.LESSONS_PAGE, listTypeCode(listType), page);
+    }
+
+    public String editAction(LessonEditState.EditAction editAction, long lessonId) {
+        for (int i = 0; i < EDIT_ACTIONS.length; i++) {
+            if (EDIT_ACTIONS[i] == editAction) {
+                return encode(CallbackAction.EDIT_ACTION, i, lessonId);
+            }
+        }
+        throw new IllegalArgumentException("Unknown edit action: " + editAction);
+    }
+
+    // Разбирает callback_data в target без выделения памяти. false — формат не распознан.
+    public boolean decode(String data, DecodedCallback target) {
+        boolean decoded = data != null && !data.isEmpty() && (data.charAt(0) == FORMAT_V1
+                ? decodeCompact(data, target)
+                : decodeLegacy(data, target));
+        if (!decoded) {
+            invalidCallbacks.increment();
+        } else if (target.isLegacy()) {
+            legacyDecodes.increment();
+        } else {
+            compactDecodes.increment();
+        }
+        return decoded;
+    }
+
+    // Номер перестановки (0..23) для порядка показа: order[позиция] = индекс ответа
+    public static int permutationIndex(int[] order) {
+        int index = 0;
+        int used = 0;
+        for (int position = 0; position < ANSWER_SLOTS; position++) {
+            int element = order[position];
+            int rank = Integer.bitCount(~used & ((1 << element) - 1));
+            index += rank * FACTORIALS[ANSWER_SLOTS - 1 - position];
+            used |= 1 << element;
+        }
+        return index;
+    }
+
+    // Индекс ответа, показанного на позиции position в перестановке permutation
+    public static int permutationElement(int permutation, int position) {
+        int used = 0;
+        int element = -1;
+        for (int i = 0; i <= position; i++) {
+            int factorial = FACTORIALS[ANSWER_SLOTS - 1 - i];
+            int rank = permutation / factorial;
+            permutation %= factorial;
+            element = nthUnused(used, rank);
+            used |= 1 << element;
+        }
+        return element;
+    }
+
+    public long getCompactDecodes() {
+        return compactDecodes.sum();
+    }
+
+    public long getLegacyDecodes() {
+        return legacyDecodes.sum();
+    }
+
+    public long getInvalidCallbacks() {
+        return invalidCallbacks.sum();
+    }
+
+    private static StringBuilder builder(CallbackAction action, int argCount) {
+        if (action.getArity() != argCount) {
+            throw new IllegalArgumentException("Callback " + action + " expects " + action.getArity() + " arguments");
+        }
+        return new StringBuilder(2 + argCount * 4).append(FORMAT_V1).append(action.getTag());
+    }
+
+    private static String finish(StringBuilder data) {
+        // Алфавит однобайтовый, поэтому длина в символах равна длине в байтах
+        if (data.length() > MAX_LENGTH) {
+            throw new IllegalStateException("Callback data exceeds " + MAX_LENGTH + " bytes");
+        }
+        return data.toString();
+    }
+
+    private static void appendVarint(StringBuilder data, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Callback argument must be non-negative: " + value);
+        }
+        while (value > PAYLOAD_MASK) {
+            data.append(ALPHABET[(int) (value & PAYLOAD_MASK) | CONTINUATION]);
+            value >>>= 5;
+        }
+        data.append(ALPHABET[(int) value]);
+    }
+
+    private static boolean decodeCompact(String data, DecodedCallback target) {
+        target.reset(false);
+        if (data.length() < 2) {
+            return false;
+        }
+        CallbackAction action = CallbackAction.byTag(data.charAt(1));
+        if (action == null) {
+            return false;
+        }
+        target.setAction(action);
+        int position = 2;
+        int length = data.length();
+        while (position < length) {
+            long value = 0;
+            int shift = 0;
+            int digit;
+            do {
+                if (position == length || shift > 60) {
+                    return false;
+                }
+                char c = data.charAt(position++);
+                digit = c < DIGITS.length ? DIGITS[c] : -1;
+                if (digit < 0) {
+                    return false;
+                }
+                value |= (long) (digit & PAYLOAD_MASK) << shift;
+                shift += 5;
+            } while ((digit & CONTINUATION) != 0);
+            if (!target.addArg(value)) {
+                return false;
+            }
+        }
+        return target.getArgCount() == action.getArity() && argumentsInRange(action, target);
+    }
+
+    // Коды перечислений и номер перестановки должны попадать в свои таблицы: иначе кнопку
+    // (например, подделанную) отклоняем здесь, а не падаем при чтении аргумента в обработчике
+    private static boolean argumentsInRange(CallbackAction action, DecodedCallback target) {
+        return switch (action) {
+            case ANSWER -> target.getLong(3) < PERMUTATIONS;
+            case LESSONS_PAGE -> target.getLong(0) < LIST_TYPES.length;
+            case EDIT_ACTION -> target.getLong(0) < EDIT_ACTIONS.length;
+            default -> true;
+        };
+    }
+
+    private static boolean decodeLegacy(String data, DecodedCallback target) {
+        target.reset(true);
+        for (CallbackAction action : ACTIONS) {
+            String name = action.getLegacyName();
+            if (!data.startsWith(name)) {
+                continue;
+            }
+            String spec = action.getLegacyArgs();
+            if (spec.isEmpty()) {
+                if (data.length() != name.length()) {
+                    continue;
+                }
+                target.setAction(action);
+                return true;
+            }
+            if (data.length() <= name.length() || data.charAt(name.length()) != ':') {
+                continue;
+            }
+            target.setAction(action);
+            return decodeLegacyArgs(data, name.length() + 1, spec, target);
+        }
+        return false;
+    }
+
+    private static boolean decodeLegacyArgs(String data, int position, String spec, DecodedCallback target) {
+        int length = data.length();
+        for (int i = 0; i < spec.length(); i++) {
+            char kind = spec.charAt(i);
+            if (kind == 'O') {
+                // Порядок ответов необязателен: без него показываем ответы в исходном порядке
+                target.addArg(position < length ? legacyPermutation(data, position, length, target) : -1);
+                return true;
+            }
+            if (position > length) {
+                return false;
+            }
+            int end = data.indexOf(':', position);
+            if (end < 0) {
+                end = length;
+            }
+            long value;
+            if (kind == 'n') {
+                value = parseLong(data, position, end);
+            } else if (kind == 'L') {
+                value = indexOfRegion(LIST_TYPES, data, position, end);
+            } else {
+                value = indexOfRegion(LEGACY_EDIT_ACTIONS, data, position, end);
+            }
+            if (value < 0) {
+                return false;
+            }
+            target.addArg(value);
+            position = end + 1;
+        }
+        return position > length;
+    }
+
+    // Старые кнопки хранили answerId в порядке показа. Ответы в плане теста отсортированы по id,
+    // поэтому ранг id среди четырех и есть индекс ответа. -1, если порядок не разобрался.
+    private static long legacyPermutation(String data, int position, int length, DecodedCallback target) {
+        long[] ids = target.answerIds;
+        int count = 0;
+        while (position <= length) {
+            int end = data.indexOf(',', position);
+            if (end < 0) {
+                end = length;
+            }
+            long id = parseLong(data, position, end);
+            if (id < 0 || count == ANSWER_SLOTS) {
+                return -1;
+            }
+            ids[count++] = id;
+            position = end + 1;
+        }
+        if (count != ANSWER_SLOTS) {
+            return -1;
+        }
+        int[] order = target.answerOrder;
+        for (int i = 0; i < ANSWER_SLOTS; i++) {
+            int rank = 0;
+            for (int j = 0; j < ANSWER_SLOTS; j++) {
+                if (ids[j] < ids[i]) {
+                    rank++;
+                } else if (ids[j] == ids[i] && j != i) {
+                    return -1;
+                }
+            }
+            order[i] = rank;
+        }
+        return permutationIndex(order);
+    }
+
+    private static long parseLong(String data, int start, int end) {
+        if (start >= end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = data.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int indexOfRegion(String[] names, String data, int start, int end) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].length() == end - start && data.regionMatches(start, names[i], 0, end - start)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int listTypeCode(String listType) {
+        for (int i = 0; i < LIST_TYPES.length; i++) {
+            if (LIST_TYPES[i].equals(listType)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown lesson list type: " + listType);
+    }
+
+
+    private static int nthUnused(int used, int rank) {
+        for (int element = 0; element < ANSWER_SLOTS; element++) {
+            if ((used & (1 << element)) == 0 && rank-- == 0) {
+                return element;
+            }
+        }
+        throw new IllegalArgumentException("Invalid permutation rank");
+    }
+}
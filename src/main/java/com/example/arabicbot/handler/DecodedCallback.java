@@ -0,0 +1,69 @@
+package com.example.arabicbot.handler;
+
+import com.example.arabicbot.service.LessonEditState;
+
+// Результат разбора callback_data. Объект переиспользуется (один на поток обработки),
+// поэтому разбор кнопки не создает ни строк, ни массивов.
+public final class DecodedCallback {
+
+    static final int MAX_ARGS = 4;
+
+    private CallbackAction action;
+    private final long[] args = new long[MAX_ARGS];
+    private int argCount;
+    private boolean legacy;
+
+    // Рабочие буферы для разбора порядка ответов из старых кнопок
+    final long[] answerIds = new long[CallbackCodec.ANSWER_SLOTS];
+    final int[] answerOrder = new int[CallbackCodec.ANSWER_SLOTS];
+
+    public CallbackAction getAction() {
+        return action;
+    }
+
+    public long getLong(int index) {
+        if (index >= argCount) {
+            throw new IllegalArgumentException("Callback " + action + " has no argument " + index);
+        }
+        return args[index];
+    }
+
+    public int getInt(int index) {
+        return (int) getLong(index);
+    }
+
+    public String getListType(int index) {
+        return CallbackCodec.LIST_TYPES[getInt(index)];
+    }
+
+    public LessonEditState.EditAction getEditAction(int index) {
+        return CallbackCodec.EDIT_ACTIONS[getInt(index)];
+    }
+
+    // Кнопка в старом текстовом формате
+    public boolean isLegacy() {
+        return legacy;
+    }
+
+    void reset(boolean legacy) {
+        this.action = null;
+        this.argCount = 0;
+        this.legacy = legacy;
+    }
+
+    void setAction(CallbackAction action) {
+        this.action = action;
+    }
+
+    boolean addArg(long value) {
+        if (argCount == MAX_ARGS) {
+            return false;
+        }
+        args[argCount++] = value;
+        return true;
+    }
+
+    int getArgCount() {
+        return argCount;
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.arabicbot.handler;
+
+import com.example.arabicbot.service.CatalogChangedEvent;
+import com.example.arabicbot.service.LessonCatalog;
+import com.example.arabicbot.service.LessonEditState;
+import com.example.arabicbot.service.QuizPlan;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardButton;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Клавиатуры, которые не зависят от пользователя, собираются один раз и переиспользуются
+// во всех сообщениях. После сборки объекты не меняются — их можно только отправлять.
+// Клавиатуры вопросов теста собираются на каждый показ: порядок ответов у каждого сообщения свой.
+@Component
+public class Keyboards {
+
+    private final CallbackCodec callbackCodec;
+    private final LessonCatalog lessonCatalog;
+    private final ReplyKeyboardMarkup userKeyboard;
+    private final ReplyKeyboardMarkup adminKeyboard;
+    private final InlineKeyboardMarkup adminMenu;
+    private final InlineKeyboardMarkup lessonNavigation;
+    private final InlineKeyboardMarkup cancel;
+    private final InlineKeyboardMarkup skip;
+    // Выбор действия редактирования зависит только от урока. Кэшируются только уроки из каталога,
+    // запись удаляется при изменении или удалении урока, поэтому размер ограничен числом уроков.
+    private final Map<Long, InlineKeyboardMarkup> actionSelections = new ConcurrentHashMap<>();
+
+    public Keyboards(CallbackCodec callbackCodec, LessonCatalog lessonCatalog) {
+        this.callbackCodec = callbackCodec;
+        this.lessonCatalog = lessonCatalog;
+        this.userKeyboard = buildMainKeyboard(false);
+        this.adminKeyboard = buildMainKeyboard(true);
+        this.adminMenu = column(
+                button("➕ Создать урок", callbackCodec.encode(CallbackAction.ADMIN_CREATE_LESSON)),
+                button("✏️ Изменить урок", callbackCodec.encode(CallbackAction.ADMIN_EDIT_LESSON)),
+                button("🗑️ Удалить урок", callbackCodec.encode(CallbackAction.ADMIN_DELETE_LESSON)),
+                button("📚 Список уроков", callbackCodec.encode(CallbackAction.ADMIN_LIST_LESSONS)));
+        this.lessonNavigation = column(
+                button("➡️ Следующий урок", callbackCodec.encode(CallbackAction.NEXT_LESSON)),
+                button("📚 Выбрать урок", callbackCodec.encode(CallbackAction.CHOOSE_LESSON)));
+        this.cancel = column(button("❌ Отмена", callbackCodec.encode(CallbackAction.EDIT_CANCEL)));
+        this.skip = column(button("⏭️ Пропустить", callbackCodec.encode(CallbackAction.EDIT_SKIP)));
+    }
+
+    public ReplyKeyboardMarkup mainKeyboard(boolean isAdmin) {
+        return isAdmin ? adminKeyboard : userKeyboard;
+    }
+
+    public InlineKeyboardMarkup adminMenu() {
+        return adminMenu;
+    }
+
+    public InlineKeyboardMarkup lessonNavigation() {
+        return lessonNavigation;
+    }
+
+    public InlineKeyboardMarkup cancel() {
+        return cancel;
+    }
+
+    public InlineKeyboardMarkup skip() {
+        return skip;
+    }
+
+    public InlineKeyboardMarkup actionSelection(Long lessonId) {
+        InlineKeyboardMarkup keyboard = actionSelections.get(lessonId);
+        if (keyboard != null) {
+            return keyboard;
+        }
+        // id приходит из кнопки: для несуществующего урока клавиатуру собираем, но не запоминаем
+        if (lessonCatalog.snapshot().findLesson(lessonId).isEmpty()) {
+            return buildActionSelection(lessonId);
+        }
+        return actionSelections.computeIfAbsent(lessonId, this::buildActionSelection);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.change() != CatalogChangedEvent.Change.LESSON) {
+            return;
+        }
+        if (event.lessonId() != null) {
+            actionSelections.remove(event.lessonId());
+        } else {
+            actionSelections.clear();
+        }
+    }
+
+    private InlineKeyboardMarkup buildActionSelection(Long id) {
+        return column(
+                button("1️⃣ Поменять название", callbackCodec.editAction(LessonEditState.EditAction.CHANGE_TITLE, id)),
+                button("2️⃣ Поменять видео", callbackCodec.editAction(LessonEditState.EditAction.CHANGE_VIDEO, id)),
+                button("3️⃣ Поменять описание", callbackCodec.editAction(LessonEditState.EditAction.CHANGE_DESCRIPTION, id)),
+                button("4️⃣ Редактировать варианты ответа", callbackCodec.editAction(LessonEditState.EditAction.EDIT_ANSWERS, id)),
+                button("5️⃣ Поменять правильный ответ",
+                        callbackCodec.editAction(LessonEditState.EditAction.CHANGE_CORRECT_ANSWER, id)));
+    }
+
+    // Ответы вопроса (A, B, C, D) в случайном порядке; порядок показа уходит в кнопки одним номером перестановки
+    public InlineKeyboardMarkup question(QuizPlan plan, int questionIndex, Random random) {
+        int[] order = {0, 1, 2, 3};
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        int permutation = CallbackCodec.permutationIndex(order);
+
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        char label = 'A';
+        for (int answerIndex : order) {
+            InlineKeyboardButton button = new InlineKeyboardButton();
+            button.setText(label + ". " + plan.getAnswerText(questionIndex, answerIndex));
+            button.setCallbackData(callbackCodec.answer(plan.getLessonId(), plan.getQuestionId(questionIndex),
+                    plan.getAnswerId(questionIndex, answerIndex), permutation));
+            rows.add(Collections.singletonList(button));
+            label++;
+        }
+
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
+        keyboard.setKeyboard(rows);
+        return keyboard;
+    }
+
+    // Ответы с отметками результата в том же порядке, что и в исходном сообщении; кнопки больше не активны
+    public InlineKeyboardMarkup answeredQuestion(QuizPlan plan, int questionIndex, int selectedIndex, int permutation) {
+        // Восстанавливаем порядок показа из номера перестановки; -1 (старые кнопки без порядка) —
+        // исходный порядок ответов
+        int answerCount = plan.getAnswerCount(questionIndex);
+        boolean shuffled = permutation >= 0 && answerCount == CallbackCodec.ANSWER_SLOTS;
+        int correctIndex = plan.getCorrectAnswerIndex(questionIndex);
+
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        char label = 'A';
+        for (int position = 0; position < answerCount; position++) {
+            int answerIndex = shuffled ? CallbackCodec.permutationElement(permutation, position) : position;
+            InlineKeyboardButton button = new InlineKeyboardButton();
+            String prefix = "";
+
+            if (answerIndex == correctIndex) {
+                prefix = "✅ ";
+            } else if (answerIndex == selectedIndex) {
+                prefix = "❌ ";
+            }
+
+            button.setText(prefix + label + ". " + plan.getAnswerText(questionIndex, answerIndex));
+            button.setCallbackData(callbackCodec.encode(CallbackAction.ANSWERED));
+            rows.add(Collections.singletonList(button));
+            label++;
+        }
+
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
+        keyboard.setKeyboard(rows);
+        return keyboard;
+    }
+
+    static InlineKeyboardButton button(String text, String callbackData) {
+        InlineKeyboardButton button = new InlineKeyboardButton();
+        button.setText(text);
+        button.setCallbackData(callbackData);
+        return button;
+    }
+
+    // По одной кнопке в строке
+    static InlineKeyboardMarkup column(InlineKeyboardButton... buttons) {
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>(buttons.length);
+        for (InlineKeyboardButton button : buttons) {
+            rows.add(List.of(button));
+        }
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
+        keyboard.setKeyboard(List.copyOf(rows));
+        return keyboard;
+    }
+
+    private static ReplyKeyboardMarkup buildMainKeyboard(boolean isAdmin) {
+        ReplyKeyboardMarkup keyboardMarkup = new ReplyKeyboardMarkup();
+        keyboardMarkup.setResizeKeyboard(true);
+        keyboardMarkup.setOneTimeKeyboard(false);
+        keyboardMarkup.setSelective(true);
+
+        List<KeyboardRow> keyboard = new ArrayList<>();
+
+        // Первая строка
+        KeyboardRow row1 = new KeyboardRow();
+        row1.add(new KeyboardButton("📚 Выбрать урок"));
+        keyboard.add(row1);
+
+        // Вторая строка
+        KeyboardRow row2 = new KeyboardRow();
+        row2.add(new KeyboardButton("📊 Профиль"));
+        row2.add(new KeyboardButton("❓ Помощь"));
+        keyboard.add(row2);
+
+        // Третья строка для админов
+        if (isAdmin) {
+            KeyboardRow row3 = new KeyboardRow();
+            row3.add(new KeyboardButton("🔧 Админ-меню"));
+            keyboard.add(row3);
+        }
+
+        keyboardMarkup.setKeyboard(List.copyOf(keyboard));
+        return keyboardMarkup;
+    }
+}
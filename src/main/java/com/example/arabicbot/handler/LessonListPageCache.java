@@ -0,0 +1,153 @@
+package com.example.arabicbot.handler;
+
+import com.example.arabicbot.dto.LessonView;
+import com.example.arabicbot.service.CatalogSnapshot;
+import com.example.arabicbot.service.LessonCatalog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Готовые страницы списка уроков по (тип списка, страница, версия каталога). Страница собирается
+// при первом показе и дальше отдается как есть; при смене версии каталога все страницы
+// прежней версии отбрасываются разом.
+@Component
+@RequiredArgsConstructor
+public class LessonListPageCache {
+
+    public static final int PAGE_SIZE = 50;
+
+    public record LessonListPage(String text, InlineKeyboardMarkup keyboard) {
+    }
+
+    private final LessonCatalog lessonCatalog;
+    private final CallbackCodec callbackCodec;
+
+    private final AtomicReference<RenderedPages> current = new AtomicReference<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    // null — уроков нет. Номер страницы за пределами списка приводится к ближайшей существующей.
+    public LessonListPage getPage(String listType, int page) {
+        CatalogSnapshot snapshot = lessonCatalog.snapshot();
+        if (snapshot.size() == 0) {
+            return null;
+        }
+        RenderedPages pages = pagesFor(snapshot);
+        int pageIndex = Math.max(0, Math.min(page, pages.totalPages - 1));
+        int slot = CallbackCodec.listTypeCode(listType) * pages.totalPages + pageIndex;
+        LessonListPage rendered = pages.pages.get(slot);
+        if (rendered != null) {
+            hits.increment();
+            return rendered;
+        }
+        misses.increment();
+        rendered = render(snapshot.getLessons(), listType, pageIndex, pages.totalPages);
+        // Гонка безопасна: две одновременные сборки дают одинаковые страницы
+        pages.pages.compareAndSet(slot, null, rendered);
+        return rendered;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    private RenderedPages pagesFor(CatalogSnapshot snapshot) {
+        while (true) {
+            RenderedPages pages = current.get();
+            if (pages != null && pages.version == snapshot.getVersion()) {
+                return pages;
+            }
+            RenderedPages fresh = new RenderedPages(snapshot.getVersion(), snapshot.size());
+            if (pages != null && pages.version > snapshot.getVersion()) {
+                // Читаем устаревший снимок — собираем страницы без сохранения
+                return fresh;
+            }
+            if (current.compareAndSet(pages, fresh)) {
+                if (pages != null) {
+                    invalidations.increment();
+                }
+                return fresh;
+            }
+        }
+    }
+
+    private LessonListPage render(List<LessonView> lessons, String listType, int page, int totalPages) {
+        int startIndex = page * PAGE_SIZE;
+        int endIndex = Math.min(startIndex + PAGE_SIZE, lessons.size());
+
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+
+        // Уроки текущей страницы, callback зависит от типа списка
+        for (int i = startIndex; i < endIndex; i++) {
+            LessonView lesson = lessons.get(i);
+            String callbackData;
+            if ("edit".equals(listType)) {
+                callbackData = callbackCodec.encode(CallbackAction.EDIT_LESSON, lesson.id());
+            } else if ("delete".equals(listType)) {
+                callbackData = callbackCodec.encode(CallbackAction.DELETE_LESSON, lesson.id());
+            } else {
+                callbackData = callbackCodec.encode(CallbackAction.LESSON, lesson.id());
+            }
+            rows.add(List.of(Keyboards.button(lesson.title(), callbackData)));
+        }
+
+        // Кнопки навигации
+        List<InlineKeyboardButton> navRow = new ArrayList<>();
+        if (page > 0) {
+            navRow.add(Keyboards.button("◀️ Предыдущие", callbackCodec.lessonsPage(listType, page - 1)));
+        }
+        if (page < totalPages - 1) {
+            navRow.add(Keyboards.button("Далее ▶️", callbackCodec.lessonsPage(listType, page + 1)));
+        }
+        if (!navRow.isEmpty()) {
+            rows.add(List.copyOf(navRow));
+        }
+
+        // Кнопка возврата в меню для админских списков
+        if ("admin".equals(listType) || "edit".equals(listType) || "delete".equals(listType)) {
+            rows.add(List.of(Keyboards.button("◀️ Назад в меню", callbackCodec.encode(CallbackAction.ADMIN_MENU))));
+        }
+
+        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
+        keyboard.setKeyboard(List.copyOf(rows));
+
+        String text = "📚 Выберите урок:";
+        if ("edit".equals(listType)) {
+            text = "Выберите урок для редактирования:";
+        } else if ("delete".equals(listType)) {
+            text = "Выберите урок для удаления:";
+        }
+        if (totalPages > 1) {
+            text += "\n\nСтраница " + (page + 1) + " из " + totalPages;
+        }
+        return new LessonListPage(text, keyboard);
+    }
+
+    private static final class RenderedPages {
+        private final long version;
+        private final int totalPages;
+        private final AtomicReferenceArray<LessonListPage> pages;
+
+        private RenderedPages(long version, int lessonCount) {
+            this.version = version;
+            this.totalPages = (lessonCount + PAGE_SIZE - 1) / PAGE_SIZE;
+            this.pages = new AtomicReferenceArray<>(CallbackCodec.LIST_TYPES.length * totalPages);
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.example.arabicbot.handler;
+
+import com.example.arabicbot.config.BotConfig;
+import com.example.arabicbot.service.DelayedActionScheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Единая очередь исходящих запросов к Telegram. Соблюдает глобальный лимит и лимит на чат
+// (token bucket), повторяет запросы после 429 с учетом retry_after и пропускает приоритетные
+// запросы (правки сообщений с результатами теста) вперед обычных и массовых отправок.
+// Внутри одного чата запросы уходят по одному и в порядке приоритета, затем постановки.
+// После 429 на паузу встает и чат, и общий лимит: retry_after означает, что Telegram сейчас
+// отклонит и другие запросы бота.
+// Метрики: telegram.requests — время каждой попытки по методу Bot API и статусу (ok, 429, error),
+// telegram.queue.wait — ожидание в очереди до первой попытки; обе с гистограммой для перцентилей.
+@Slf4j
+@Component
+public class OutboundMessageQueue {
+
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        BULK
+    }
+
+    @FunctionalInterface
+    public interface TelegramCall<T> {
+        T execute() throws TelegramApiException;
+    }
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final Comparator<Task<?>> TASK_ORDER =
+            Comparator.<Task<?>>comparingInt(task -> task.priority.ordinal()).thenComparingLong(task -> task.seq);
+
+    private final DelayedActionScheduler delayedActionScheduler;
+    private final Map<Long, ChatLane> lanes = new ConcurrentHashMap<>();
+    private final PriorityBlockingQueue<ReadyLane> readyLanes = new PriorityBlockingQueue<>();
+    private final TokenBucket globalBucket;
+    private final double chatRatePerSecond;
+    private final int chatBurst;
+    private final int maxRetries;
+    private final ExecutorService senders;
+    private final Thread pumpThread;
+    private final AtomicLong sequence = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RequestTimers> requestTimers = new ConcurrentHashMap<>();
+    private final Timer queueWait;
+    private volatile boolean running = true;
+
+    private final AtomicInteger queuedRequests = new AtomicInteger();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final LongAdder sentRequests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder rateLimitedRequests = new LongAdder();
+
+    public OutboundMessageQueue(BotConfig botConfig, DelayedActionScheduler delayedActionScheduler,
+                                MeterRegistry meterRegistry) {
+        this.delayedActionScheduler = delayedActionScheduler;
+        this.meterRegistry = meterRegistry;
+        this.queueWait = Timer.builder("telegram.queue.wait")
+                .description("Time a Telegram request waits in the outbound queue before its first attempt")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.globalBucket = new TokenBucket(botConfig.getOutboundGlobalRate(), botConfig.getOutboundGlobalRate());
+        this.chatRatePerSecond = botConfig.getOutboundChatRate();
+        this.chatBurst = Math.max(1, botConfig.getOutboundChatBurst());
+        this.maxRetries = Math.max(0, botConfig.getOutboundMaxRetries());
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, botConfig.getOutboundSenderThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "telegram-sender-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pumpThread = new Thread(this::runPump, "telegram-outbound");
+        this.pumpThread.setDaemon(true);
+        this.pumpThread.start();
+    }
+
+    // chatId может быть null для запросов без чата (например, SetMyCommands);
+    // method — имя метода Bot API (PartialBotApiMethod.getMethod()), тег метрик запроса
+    public <T> CompletableFuture<T> submit(Long chatId, Priority priority, String method, TelegramCall<T> call) {
+        Long laneKey = chatId != null ? chatId : 0L;
+        Task<T> task = new Task<>(priority, sequence.incrementAndGet(), requestTimers(method), call);
+        queuedRequests.incrementAndGet();
+        ChatLane[] activated = new ChatLane[1];
+        ChatLane[] raised = new ChatLane[1];
+        lanes.compute(laneKey, (key, lane) -> {
+            if (lane == null) {
+                lane = new ChatLane(key, new TokenBucket(chatRatePerSecond, chatBurst));
+            }
+            synchronized (lane) {
+                lane.tasks.add(task);
+                if (lane.offer != null && task.priority.compareTo(lane.offer.priority()) < 0) {
+                    raised[0] = lane;
+                }
+            }
+            if (!lane.active) {
+                lane.active = true;
+                activated[0] = lane;
+            }
+            return lane;
+        });
+        if (activated[0] != null) {
+            scheduleLane(activated[0]);
+        } else if (raised[0] != null) {
+            reoffer(raised[0]);
+        }
+        return task.future;
+    }
+
+    public int getQueuedRequests() {
+        return queuedRequests.get();
+    }
+
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    public long getSentRequests() {
+        return sentRequests.sum();
+    }
+
+    public long getFailedRequests() {
+        return failedRequests.sum();
+    }
+
+    public long getRateLimitedRequests() {
+        return rateLimitedRequests.sum();
+    }
+
+    public double getAverageQueueLatencyMs() {
+        return queueWait.mean(TimeUnit.MILLISECONDS);
+    }
+
+    // Максимум за последнее окно таймера
+    public double getMaxQueueLatencyMs() {
+        return queueWait.max(TimeUnit.MILLISECONDS);
+    }
+
+    private RequestTimers requestTimers(String method) {
+        RequestTimers timers = requestTimers.get(method);
+        if (timers == null) {
+            timers = requestTimers.computeIfAbsent(method, key -> new RequestTimers(
+                    requestTimer(key, "ok"), requestTimer(key, String.valueOf(TOO_MANY_REQUESTS)), requestTimer(key, "error")));
+        }
+        return timers;
+    }
+
+    private Timer requestTimer(String method, String status) {
+        return Timer.builder("telegram.requests")
+                .description("Telegram Bot API call time per attempt")
+                .tag("method", method)
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Лейн попадает в очередь готовых, когда лимит чата и retry_after это позволяют
+    private void scheduleLane(ChatLane lane) {
+        long now = System.nanoTime();
+        long waitNanos = Math.max(lane.blockedUntilNanos - now, 0);
+        if (waitNanos == 0) {
+            waitNanos = lane.bucket.tryAcquire(now);
+            if (waitNanos == 0) {
+                synchronized (lane) {
+                    Task<?> head = lane.tasks.peek();
+                    lane.offer = new ReadyLane(lane, head.priority, head.seq);
+                    readyLanes.add(lane.offer);
+                }
+                return;
+            }
+        }
+        delayedActionScheduler.schedule(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1, () -> scheduleLane(lane));
+    }
+
+    // В уже готовый лейн пришел более приоритетный запрос: переставляем лейн в очереди готовых
+    // с новым приоритетом. Если насос уже забрал лейн, remove не сработает — насос и так возьмет
+    // голову очереди чата, то есть этот запрос. Лейн, ждущий лимита чата, получит приоритет головы
+    // при постановке в очередь готовых.
+    private void reoffer(ChatLane lane) {
+        synchronized (lane) {
+            ReadyLane current = lane.offer;
+            Task<?> head = lane.tasks.peek();
+            if (current == null || head == null || head.priority.compareTo(current.priority()) >= 0) {
+                return;
+            }
+            if (readyLanes.remove(current)) {
+                lane.offer = new ReadyLane(lane, head.priority, head.seq);
+                readyLanes.add(lane.offer);
+            }
+        }
+    }
+
+    // Сначала ждем общий токен, потом выбираем лейн: пока действует общий лимит, в очереди готовых
+    // успевают появиться приоритетные запросы, и уходит самый важный из них
+    private void runPump() {
+        boolean hasToken = false;
+        while (running) {
+            long waitNanos;
+            while (!hasToken && (waitNanos = globalBucket.tryAcquire(System.nanoTime())) > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            hasToken = true;
+            ReadyLane ready;
+            try {
+                ready = readyLanes.take();
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return;
+                }
+                continue;
+            }
+            // Пауза после 429 могла начаться, пока насос ждал готовый лейн
+            while ((waitNanos = globalBucket.pausedFor(System.nanoTime())) > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            hasToken = false;
+            Task<?> task;
+            synchronized (ready.lane) {
+                ready.lane.offer = null;
+                task = ready.lane.tasks.poll();
+            }
+            inFlightRequests.incrementAndGet();
+            senders.execute(() -> send(ready.lane, task));
+        }
+    }
+
+    private <T> void send(ChatLane lane, Task<T> task) {
+        boolean retry = false;
+        long startedNanos = System.nanoTime();
+        if (task.attempts == 0) {
+            queueWait.record(startedNanos - task.enqueuedNanos, TimeUnit.NANOSECONDS);
+        }
+        task.attempts++;
+        Timer attemptTimer = task.timers.error();
+        try {
+            T result = task.call.execute();
+            attemptTimer = task.timers.ok();
+            sentRequests.increment();
+            task.future.complete(result);
+        } catch (TelegramApiRequestException e) {
+            Integer retryAfter = e.getParameters() != null ? e.getParameters().getRetryAfter() : null;
+            boolean rateLimited = e.getErrorCode() != null && e.getErrorCode() == TOO_MANY_REQUESTS;
+            if (rateLimited) {
+                attemptTimer = task.timers.rateLimited();
+            }
+            if (rateLimited && task.attempts <= maxRetries) {
+                rateLimitedRequests.increment();
+                long retryAfterSeconds = retryAfter != null ? retryAfter : 1;
+                log.warn("Telegram rate limit hit for chat {}, pausing outbound requests for {} s",
+                        lane.chatId, retryAfterSeconds);
+                lane.blockedUntilNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfterSeconds);
+                globalBucket.pauseUntil(lane.blockedUntilNanos);
+                retry = true;
+            } else {
+                fail(task, e);
+            }
+        } catch (Exception e) {
+            fail(task, e);
+        } finally {
+            attemptTimer.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+            inFlightRequests.decrementAndGet();
+        }
+        finishAttempt(lane, task, retry);
+    }
+
+    private void fail(Task<?> task, Exception e) {
+        failedRequests.increment();
+        task.future.completeExceptionally(e);
+    }
+
+    private void finishAttempt(ChatLane lane, Task<?> task, boolean retry) {
+        if (!retry) {
+            queuedRequests.decrementAndGet();
+        }
+        boolean[] reschedule = new boolean[1];
+        boolean[] retire = new boolean[1];
+        lanes.compute(lane.chatId, (key, current) -> {
+            synchronized (lane) {
+                if (retry) {
+                    // Повтор сохраняет исходный seq и остается первым в своем приоритете
+                    lane.tasks.add(task);
+                }
+                if (lane.tasks.isEmpty()) {
+                    lane.active = false;
+                    retire[0] = !lane.retiring;
+                    lane.retiring = true;
+                    return lane;
+                }
+            }
+            reschedule[0] = true;
+            return lane;
+        });
+        if (reschedule[0]) {
+            scheduleLane(lane);
+        } else if (retire[0]) {
+            retireLane(lane);
+        }
+    }
+
+    // Пустой лейн остается в карте, пока его лимит не восстановится полностью и не кончится retry_after:
+    // иначе следующий запрос чата получил бы новый полный bucket и лимит на чат не действовал бы
+    private void retireLane(ChatLane lane) {
+        long[] waitNanos = new long[1];
+        lanes.computeIfPresent(lane.chatId, (key, current) -> {
+            if (current != lane || lane.active) {
+                // Лейн снова занят: finishAttempt запланирует удаление, когда он опустеет
+                lane.retiring = false;
+                return current;
+            }
+            long now = System.nanoTime();
+            waitNanos[0] = Math.max(lane.bucket.untilFull(now), lane.blockedUntilNanos - now);
+            if (waitNanos[0] > 0) {
+                return lane;
+            }
+            return null;
+        });
+        if (waitNanos[0] > 0) {
+            delayedActionScheduler.schedule(TimeUnit.NANOSECONDS.toMillis(waitNanos[0]) + 1, () -> retireLane(lane));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        pumpThread.interrupt();
+        senders.shutdown();
+        try {
+            if (!senders.awaitTermination(10, TimeUnit.SECONDS)) {
+                senders.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            senders.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (queuedRequests.get() > 0) {
+            log.warn("Outbound queue stopped with {} unsent requests", queuedRequests.get());
+        }
+    }
+
+    private static final class Task<T> {
+        private final Priority priority;
+        private final long seq;
+        private final RequestTimers timers;
+        private final TelegramCall<T> call;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long enqueuedNanos = System.nanoTime();
+        private int attempts;
+
+        private Task(Priority priority, long seq, RequestTimers timers, TelegramCall<T> call) {
+            this.priority = priority;
+            this.seq = seq;
+            this.timers = timers;
+            this.call = call;
+        }
+    }
+
+    // Таймеры одного метода Bot API, по одному на статус
+    private record RequestTimers(Timer ok, Timer rateLimited, Timer error) {
+    }
+
+    // active == true, пока у лейна есть задачи: он либо ждет лимита, либо в очереди готовых,
+    // либо его запрос выполняется. Одновременно у чата выполняется не больше одного запроса.
+    // Неактивный лейн хранит состояние лимита чата, пока не будет удален (retireLane).
+    private static final class ChatLane {
+        private final Long chatId;
+        private final TokenBucket bucket;
+        private final PriorityQueue<Task<?>> tasks = new PriorityQueue<>(TASK_ORDER);
+        private boolean active;
+        // Удаление пустого лейна уже запланировано. Как и active, меняется только внутри lanes.compute
+        private boolean retiring;
+        private volatile long blockedUntilNanos;
+        // Текущая запись лейна в очереди готовых, null — лейн не в ней. Под монитором лейна.
+        private ReadyLane offer;
+
+        private ChatLane(Long chatId, TokenBucket bucket) {
+            this.chatId = chatId;
+            this.bucket = bucket;
+        }
+    }
+
+    private record ReadyLane(ChatLane lane, Priority priority, long seq) implements Comparable<ReadyLane> {
+        @Override
+        public int compareTo(ReadyLane other) {
+            int byPriority = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            return byPriority != 0 ? byPriority : Long.compare(seq, other.seq);
+        }
+    }
+
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+        private long pausedUntilNanos = lastRefillNanos;
+
+        private TokenBucket(double ratePerSecond, double capacity) {
+            this.capacity = Math.max(1, capacity);
+            this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.tokens = this.capacity;
+        }
+
+        // Возвращает 0, если токен получен, иначе сколько наносекунд ждать следующего
+        private synchronized long tryAcquire(long now) {
+            long paused = pausedFor(now);
+            if (paused > 0) {
+                return paused;
+            }
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+        }
+
+        // retry_after: до этого момента токены не выдаются
+        private synchronized void pauseUntil(long untilNanos) {
+            if (untilNanos - pausedUntilNanos > 0) {
+                pausedUntilNanos = untilNanos;
+                // После паузы лимит набирается заново, а не выдается сразу пачкой
+                tokens = 0;
+                lastRefillNanos = untilNanos;
+            }
+        }
+
+        // Через сколько наносекунд bucket наполнится до capacity
+        private synchronized long untilFull(long now) {
+            long paused = pausedFor(now);
+            double available = paused > 0 ? tokens : Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+            if (available >= capacity || tokensPerNano <= 0) {
+                return paused;
+            }
+            return paused + (long) Math.ceil((capacity - available) / tokensPerNano);
+        }
+
+        private synchronized long pausedFor(long now) {
+            return Math.max(pausedUntilNanos - now, 0);
+        }
+    }
+}
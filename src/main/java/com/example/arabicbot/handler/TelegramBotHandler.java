@@ -1,42 +1,83 @@
 package com.example.arabicbot.handler;
 
 import com.example.arabicbot.config.BotConfig;
-import com.example.arabicbot.entity.Lesson;
-import com.example.arabicbot.entity.TestAnswer;
-import com.example.arabicbot.entity.TestQuestion;
+import com.example.arabicbot.dto.AnswerView;
+import com.example.arabicbot.dto.LessonView;
+import com.example.arabicbot.dto.QuestionView;
 import com.example.arabicbot.entity.UserProgress;
+import com.example.arabicbot.entity.UserStats;
+import com.example.arabicbot.handler.OutboundMessageQueue.Priority;
 import com.example.arabicbot.service.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
 import org.telegram.telegrambots.meta.api.methods.commands.SetMyCommands;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.send.SendVideo;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Document;
+import org.telegram.telegrambots.meta.api.objects.File;
 import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.commands.BotCommand;
 import org.telegram.telegrambots.meta.api.objects.commands.scope.BotCommandScopeDefault;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
-import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
-import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardButton;
-import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class TelegramBotHandler extends TelegramLongPollingBot {
 
+    private static final long NEXT_QUESTION_DELAY_MS = 1000;
+    private static final long NAVIGATION_DELAY_MS = 1500;
+    // Разобранная кнопка переиспользуется внутри потока обработки
+    private static final ThreadLocal<DecodedCallback> DECODED_CALLBACK = ThreadLocal.withInitial(DecodedCallback::new);
+
     private final BotConfig botConfig;
     private final LessonService lessonService;
+    private final QuizPlanService quizPlanService;
     private final UserProgressService userProgressService;
+    private final QuizAttemptLog quizAttemptLog;
+    private final UserStatsService userStatsService;
     private final LessonCreationService lessonCreationService;
     private final LessonEditService lessonEditService;
+    private final LessonImportService lessonImportService;
+    private final CatalogExportService catalogExportService;
+    private final ConversationSessionStore sessionStore;
+    private final UpdateDispatcher updateDispatcher;
+    private final DelayedActionScheduler delayedActionScheduler;
+    private final OutboundMessageQueue outboundMessageQueue;
+    private final CallbackCodec callbackCodec;
+    private final UpdateRouter updateRouter;
+    private final Keyboards keyboards;
+    private final LessonListPageCache lessonListPageCache;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> updateTimers = new ConcurrentHashMap<>();
 
     @Override
     public String getBotUsername() {
@@ -49,122 +90,199 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
     }
 
     public void initializeBotCommands() {
+        List<BotCommand> commands = new ArrayList<>();
+        commands.add(new BotCommand("start", "Главное меню"));
+        commands.add(new BotCommand("menu", "Меню"));
+        commands.add(new BotCommand("help", "Помощь"));
+
+        // Добавляем админские команды
+        commands.add(new BotCommand("admin", "Админ-меню"));
+
+        SetMyCommands setMyCommands = new SetMyCommands();
+        setMyCommands.setCommands(commands);
+        setMyCommands.setScope(new BotCommandScopeDefault());
+        send(null, setMyCommands, Priority.BULK).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("Error initializing bot commands", e);
+            } else {
+                log.info("Bot commands initialized successfully");
+            }
+        });
+    }
+
+    @Override
+    public void onUpdateReceived(Update update) {
+        // Обработка уходит в пул воркеров, порядок сохраняется в пределах одного пользователя
         try {
-            List<BotCommand> commands = new ArrayList<>();
-            commands.add(new BotCommand("start", "Главное меню"));
-            commands.add(new BotCommand("menu", "Меню"));
-            commands.add(new BotCommand("help", "Помощь"));
-            
-            // Добавляем админские команды
-            commands.add(new BotCommand("admin", "Админ-меню"));
-            
-            SetMyCommands setMyCommands = new SetMyCommands();
-            setMyCommands.setCommands(commands);
-            setMyCommands.setScope(new BotCommandScopeDefault());
-            execute(setMyCommands);
-            
-            log.info("Bot commands initialized successfully");
-        } catch (TelegramApiException e) {
-            log.error("Error initializing bot commands", e);
+            if (!updateDispatcher.dispatch(resolveOrderingKey(update), () -> processUpdate(update))) {
+                log.warn("Update dispatcher is shut down, dropping update {}", update.getUpdateId());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while dispatching update {}", update.getUpdateId());
         }
     }
 
-    private ReplyKeyboardMarkup createMainKeyboard(boolean isAdmin) {
-        ReplyKeyboardMarkup keyboardMarkup = new ReplyKeyboardMarkup();
-        keyboardMarkup.setResizeKeyboard(true);
-        keyboardMarkup.setOneTimeKeyboard(false);
-        keyboardMarkup.setSelective(true);
-
-        List<KeyboardRow> keyboard = new ArrayList<>();
-
-        // Первая строка
-        KeyboardRow row1 = new KeyboardRow();
-        row1.add(new KeyboardButton("📚 Выбрать урок"));
-        keyboard.add(row1);
-
-        // Вторая строка
-        KeyboardRow row2 = new KeyboardRow();
-        row2.add(new KeyboardButton("📊 Профиль"));
-        row2.add(new KeyboardButton("❓ Помощь"));
-        keyboard.add(row2);
+    // Вход для webhook-режима: не блокирует HTTP-поток, при переполненной очереди возвращает false
+    public boolean enqueueUpdate(Update update) {
+        return updateDispatcher.tryDispatch(resolveOrderingKey(update), () -> processUpdate(update));
+    }
 
-        // Третья строка для админов
-        if (isAdmin) {
-            KeyboardRow row3 = new KeyboardRow();
-            row3.add(new KeyboardButton("🔧 Админ-меню"));
-            keyboard.add(row3);
+    private Long resolveOrderingKey(Update update) {
+        // Состояния создания и редактирования уроков хранятся по userId, поэтому упорядочиваем по нему
+        if (update.hasMessage()) {
+            if (update.getMessage().getFrom() != null) {
+                return update.getMessage().getFrom().getId();
+            }
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery()) {
+            return update.getCallbackQuery().getFrom().getId();
         }
+        return 0L;
+    }
 
-        keyboardMarkup.setKeyboard(keyboard);
-        return keyboardMarkup;
+    @PostConstruct
+    void registerRoutes() {
+        // Команды и кнопки клавиатуры
+        updateRouter.command("start", this::handleStartCommand, "/start");
+        updateRouter.command("choose_lesson", (chatId, userId) -> sendLessonsList(chatId), "📚 Выбрать урок");
+        updateRouter.command("admin_menu", this::handleAdminMenuCommand, "/menu", "🔧 Админ-меню", "/admin", "/меню");
+        updateRouter.command("help", this::sendHelpMessage, "/help", "❓ Помощь");
+        updateRouter.command("profile", this::sendProfileMessage, "📊 Профиль");
+        updateRouter.command("lesson_create", this::handleLessonCreateCommand, "/lesson_create");
+        updateRouter.command("edit_lesson", this::handleEditLessonCommand, "/изменить существующий", "/edit_lesson");
+        updateRouter.command("import_lessons", this::handleImportCommand, "/import");
+        updateRouter.command("export", this::handleExportCommand, "/export");
+
+        // Inline-кнопки
+        updateRouter.callback(CallbackAction.LESSON,
+                (chatId, userId, messageId, callback) -> sendLesson(chatId, callback.getLong(0), userId));
+        updateRouter.callback(CallbackAction.ANSWER,
+                (chatId, userId, messageId, callback) -> handleAnswer(chatId, userId, callback.getLong(0),
+                        callback.getLong(1), callback.getLong(2), messageId, callback.getInt(3)));
+        // Нажатия на уже отвеченные вопросы игнорируем
+        updateRouter.callback(CallbackAction.ANSWERED, (chatId, userId, messageId, callback) -> { });
+        updateRouter.callback(CallbackAction.NEXT_LESSON,
+                (chatId, userId, messageId, callback) -> handleNextLesson(chatId, userId));
+        updateRouter.callback(CallbackAction.CHOOSE_LESSON,
+                (chatId, userId, messageId, callback) -> sendLessonsList(chatId));
+        updateRouter.callback(CallbackAction.LESSONS_PAGE,
+                (chatId, userId, messageId, callback) -> sendLessonsList(chatId, callback.getInt(1),
+                        callback.getListType(0), messageId));
+        updateRouter.callback(CallbackAction.EDIT_CANCEL,
+                (chatId, userId, messageId, callback) -> handleEditCancel(chatId, userId));
+        updateRouter.callback(CallbackAction.EDIT_SKIP,
+                (chatId, userId, messageId, callback) -> handleEditSkip(chatId, userId));
+        updateRouter.callback(CallbackAction.EDIT_LESSON,
+                (chatId, userId, messageId, callback) -> handleEditLessonSelected(chatId, userId, callback.getLong(0)));
+        updateRouter.callback(CallbackAction.EDIT_ACTION,
+                (chatId, userId, messageId, callback) -> handleEditAction(chatId, userId,
+                        callback.getEditAction(0), callback.getLong(1)));
+        updateRouter.callback(CallbackAction.EDIT_QUESTION_ANSWERS,
+                (chatId, userId, messageId, callback) -> handleEditQuestionAnswers(chatId, userId, callback.getLong(0)));
+        updateRouter.callback(CallbackAction.EDIT_QUESTION_CORRECT,
+                (chatId, userId, messageId, callback) -> handleEditQuestionCorrect(chatId, userId, callback.getLong(0)));
+        updateRouter.callback(CallbackAction.EDIT_CORRECT,
+                (chatId, userId, messageId, callback) -> handleEditCorrect(chatId, userId,
+                        callback.getLong(0), callback.getInt(1)));
+        updateRouter.callback(CallbackAction.ADMIN_MENU,
+                (chatId, userId, messageId, callback) -> sendAdminMenu(chatId));
+        updateRouter.callback(CallbackAction.ADMIN_CREATE_LESSON,
+                (chatId, userId, messageId, callback) -> handleLessonCreateCommand(chatId, userId));
+        updateRouter.callback(CallbackAction.ADMIN_EDIT_LESSON,
+                (chatId, userId, messageId, callback) -> handleEditLessonCommand(chatId, userId));
+        updateRouter.callback(CallbackAction.ADMIN_DELETE_LESSON,
+                (chatId, userId, messageId, callback) -> sendLessonsListForDelete(chatId));
+        updateRouter.callback(CallbackAction.ADMIN_LIST_LESSONS,
+                (chatId, userId, messageId, callback) -> sendLessonsListWithMenu(chatId));
+        updateRouter.callback(CallbackAction.DELETE_LESSON,
+                (chatId, userId, messageId, callback) -> sendDeleteConfirmation(chatId, callback.getLong(0)));
+        updateRouter.callback(CallbackAction.CONFIRM_DELETE,
+                (chatId, userId, messageId, callback) -> handleConfirmDelete(chatId, callback.getLong(0)));
+        updateRouter.callback(CallbackAction.CANCEL_DELETE,
+                (chatId, userId, messageId, callback) -> handleCancelDelete(chatId));
+        updateRouter.verifyCallbacks();
     }
 
-    @Override
-    public void onUpdateReceived(Update update) {
-        if (update.hasMessage()) {
-            if (update.getMessage().hasText()) {
-                handleMessage(update);
-            } else if (update.getMessage().hasVideo()) {
-                handleVideo(update);
+    private void processUpdate(Update update) {
+        long started = System.nanoTime();
+        String type = "other";
+        try {
+            if (update.hasMessage()) {
+                if (update.getMessage().hasText()) {
+                    type = "message";
+                    handleMessage(update);
+                } else if (update.getMessage().hasVideo()) {
+                    type = "video";
+                    handleVideo(update);
+                } else if (update.getMessage().hasDocument()) {
+                    type = "document";
+                    handleDocument(update);
+                }
+            } else if (update.hasCallbackQuery()) {
+                type = "callback";
+                handleCallbackQuery(update);
             }
-        } else if (update.hasCallbackQuery()) {
-            handleCallbackQuery(update);
+        } finally {
+            // Сохраняем шаг создания/редактирования урока в журнал, чтобы он пережил перезапуск
+            sessionStore.checkpoint(resolveOrderingKey(update));
+            updateTimer(type).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
         }
     }
 
+    // Время обработки обновления по типу (message, callback, video, document), без ожидания в очереди
+    private Timer updateTimer(String type) {
+        Timer timer = updateTimers.get(type);
+        if (timer == null) {
+            timer = updateTimers.computeIfAbsent(type, key -> Timer.builder("bot.updates")
+                    .description("Update processing time per update type")
+                    .tag("type", key)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        return timer;
+    }
+
     private void handleMessage(Update update) {
         String messageText = update.getMessage().getText();
         Long chatId = update.getMessage().getChatId();
         Long userId = update.getMessage().getFrom().getId();
 
-        // Проверяем, находится ли пользователь в процессе создания урока
-        if (lessonCreationService.hasActiveCreation(userId)) {
-            handleLessonCreationStep(update, userId, chatId, messageText);
+        // Одним обращением узнаем, идет ли у пользователя создание или редактирование урока
+        ConversationSession session = sessionStore.get(userId);
+        if (session != null) {
+            switch (session.getFlow()) {
+                case LESSON_CREATION -> handleLessonCreationStep(update, userId, chatId, messageText, session.getCreationState());
+                case LESSON_EDIT -> handleLessonEditStep(update, userId, chatId, messageText, session.getEditState());
+                case LESSON_IMPORT -> handleImportStep(chatId, userId, messageText, session.getImportState());
+            }
             return;
         }
 
-        // Проверяем, находится ли пользователь в процессе редактирования урока
-        if (lessonEditService.hasActiveEdit(userId)) {
-            handleLessonEditStep(update, userId, chatId, messageText);
-            return;
+        // Обработка команд и кнопок клавиатуры
+        if (!updateRouter.routeCommand(messageText, chatId, userId)) {
+            sendMessage(chatId, "Используйте кнопки меню или команды для навигации");
         }
+    }
 
-        // Обработка команд и кнопок клавиатуры
-        if (messageText.equals("/start")) {
-            // Показываем главное меню
-            if (botConfig.isAdmin(userId)) {
-                // Для админов показываем приветствие и админ-меню
-                sendMessageWithKeyboard(chatId, "👋 Добро пожаловать! Выберите действие:", userId);
-                sendAdminMenu(chatId);
-            } else {
-                // Для обычных пользователей показываем главное меню
-                sendMessageWithKeyboard(chatId, "👋 Добро пожаловать! Выберите действие:", userId);
-            }
-        } else if (messageText.equals("📚 Выбрать урок")) {
-            // Показываем список уроков
-            sendLessonsList(chatId);
-        } else if (messageText.equals("/menu") || messageText.equals("🔧 Админ-меню")) {
-            if (botConfig.isAdmin(userId)) {
-                sendAdminMenu(chatId);
-            } else {
-                sendMessage(chatId, "❌ У вас нет прав доступа к админ-меню.");
-            }
-        } else if (messageText.equals("/help") || messageText.equals("❓ Помощь")) {
-            sendHelpMessage(chatId, userId);
-        } else if (messageText.equals("📊 Профиль")) {
-            sendProfileMessage(chatId, userId);
-        } else if (messageText.equals("/lesson_create")) {
-            handleLessonCreateCommand(chatId, userId);
-        } else if (messageText.equals("/изменить существующий") || messageText.equals("/edit_lesson")) {
-            handleEditLessonCommand(chatId, userId);
-        } else if (messageText.equals("/admin") || messageText.equals("/меню")) {
-            if (botConfig.isAdmin(userId)) {
-                sendAdminMenu(chatId);
-            } else {
-                sendMessage(chatId, "❌ У вас нет прав доступа к админ-меню.");
-            }
+    private void handleStartCommand(Long chatId, Long userId) {
+        // Показываем главное меню
+        if (botConfig.isAdmin(userId)) {
+            // Для админов показываем приветствие и админ-меню
+            sendMessageWithKeyboard(chatId, "👋 Добро пожаловать! Выберите действие:", userId);
+            sendAdminMenu(chatId);
         } else {
-            sendMessage(chatId, "Используйте кнопки меню или команды для навигации");
+            // Для обычных пользователей показываем главное меню
+            sendMessageWithKeyboard(chatId, "👋 Добро пожаловать! Выберите действие:", userId);
+        }
+    }
+
+    private void handleAdminMenuCommand(Long chatId, Long userId) {
+        if (botConfig.isAdmin(userId)) {
+            sendAdminMenu(chatId);
+        } else {
+            sendMessage(chatId, "❌ У вас нет прав доступа к админ-меню.");
         }
     }
 
@@ -172,9 +290,14 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         Long chatId = update.getMessage().getChatId();
         Long userId = update.getMessage().getFrom().getId();
 
-        // Проверяем, находится ли пользователь в процессе создания урока
-        if (lessonCreationService.hasActiveCreation(userId)) {
-            LessonCreationState state = lessonCreationService.getState(userId);
+        ConversationSession session = sessionStore.get(userId);
+        if (session == null) {
+            return;
+        }
+
+        // Пользователь в процессе создания урока
+        if (session.getFlow() == ConversationSession.Flow.LESSON_CREATION) {
+            LessonCreationState state = session.getCreationState();
             
             // Проверяем, ожидаем ли мы видео
             if (state.getTitle() != null && state.getDescription() != null && state.getVideoFileId() == null) {
@@ -189,19 +312,176 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
             return;
         }
 
-        // Проверяем, находится ли пользователь в процессе редактирования урока
-        if (lessonEditService.hasActiveEdit(userId)) {
-            LessonEditState editState = lessonEditService.getState(userId);
-            
-            // Проверяем, ожидаем ли мы видео для редактирования
-            if (editState.getCurrentStep() == LessonEditState.EditStep.EDIT_VIDEO && editState.getLessonId() != null) {
-                        String videoFileId = update.getMessage().getVideo().getFileId();
-                        lessonService.updateLessonVideo(editState.getLessonId(), videoFileId);
-                        sendMessage(chatId, "✅ Видео успешно обновлено!");
-                        lessonEditService.clearState(userId);
-                        sendAdminMenu(chatId);
+        if (session.getFlow() != ConversationSession.Flow.LESSON_EDIT) {
+            return;
+        }
+
+        // Пользователь в процессе редактирования урока
+        LessonEditState editState = session.getEditState();
+        
+        // Проверяем, ожидаем ли мы видео для редактирования
+        if (editState.getCurrentStep() == LessonEditState.EditStep.EDIT_VIDEO && editState.getLessonId() != null) {
+                    String videoFileId = update.getMessage().getVideo().getFileId();
+                    lessonService.updateLessonVideo(editState.getLessonId(), videoFileId);
+                    sendMessage(chatId, "✅ Видео успешно обновлено!");
+                    lessonEditService.clearState(userId);
+                    sendAdminMenu(chatId);
+        }
+    }
+
+    private void handleImportCommand(Long chatId, Long userId) {
+        if (!botConfig.isAdmin(userId)) {
+            sendMessage(chatId, "❌ У вас нет прав для импорта уроков.");
+            return;
+        }
+        LessonImportState state = lessonImportService.getOrCreateState(userId);
+        if (state.getFileName() != null) {
+            sendMessage(chatId, "⏳ Дождитесь окончания импорта " + state.getFileName());
+            return;
+        }
+        sendMessage(chatId, "📥 Импорт уроков\n\n" +
+                "Отправьте файл .json или .csv. Любое сообщение вместо файла отменяет импорт.\n\n" +
+                "JSON — массив уроков:\n" +
+                "[{\"title\": \"...\", \"description\": \"...\", \"videoFileId\": \"...\",\n" +
+                "  \"questions\": [{\"question\": \"...\", \"answers\": [\"1\", \"2\", \"3\", \"4\"], \"correctAnswerIndex\": 1}]}]\n\n" +
+                "CSV — строка на вопрос, первая строка — заголовок:\n" +
+                "title,description,video_file_id,question,answer1,answer2,answer3,answer4,correct\n" +
+                "Строки одного урока идут подряд, поля урока в них можно не повторять.\n\n" +
+                "В каждом уроке 3 вопроса по 4 ответа, правильный ответ — номер от 1 до 4.");
+    }
+
+    // Текст в сессии импорта: пока ждем файл, сообщение отменяет импорт; затем обрабатываем его как обычно
+    private void handleImportStep(Long chatId, Long userId, String messageText, LessonImportState state) {
+        if (state.getFileName() == null) {
+            lessonImportService.clearState(userId);
+            sendMessage(chatId, "Импорт отменен.");
+        }
+        if (!updateRouter.routeCommand(messageText, chatId, userId)) {
+            sendMessage(chatId, "Используйте кнопки меню или команды для навигации");
+        }
+    }
+
+    // Документ в сессии /import — импорт уроков. GetFile идет через очередь исходящих запросов,
+    // а скачивание, разбор и сохранение пачками — в потоке импорта, не занимая воркер обновлений.
+    private void handleDocument(Update update) {
+        Long chatId = update.getMessage().getChatId();
+        Long userId = update.getMessage().getFrom().getId();
+        if (!botConfig.isAdmin(userId)) {
+            return;
+        }
+        LessonImportState state = lessonImportService.getState(userId);
+        if (state == null) {
+            sendMessage(chatId, "Чтобы импортировать уроки, сначала отправьте /import");
+            return;
+        }
+        if (state.getFileName() != null) {
+            sendMessage(chatId, "⏳ Дождитесь окончания импорта " + state.getFileName());
+            return;
+        }
+        Document document = update.getMessage().getDocument();
+        LessonImportService.Format format = LessonImportService.detectFormat(document.getFileName());
+        if (format == null) {
+            sendMessage(chatId, "❌ Для импорта нужен файл .json или .csv. Формат — /import");
+            return;
+        }
+
+        state.setFileName(document.getFileName());
+        sendMessage(chatId, "⏳ Импорт уроков из " + document.getFileName() + "...");
+        send(chatId, new GetFile(document.getFileId()), Priority.BULK)
+                .thenCompose(file -> lessonImportService.importLessonsAsync(() -> downloadImportFile(file), format,
+                        imported -> sendMessage(chatId, "⏳ Сохранено уроков: " + imported)))
+                .whenComplete((report, e) -> {
+                    lessonImportService.clearState(userId);
+                    if (e != null) {
+                        reportImportFailure(chatId, document, e instanceof CompletionException && e.getCause() != null
+                                ? e.getCause() : e);
+                    } else {
+                        sendImportReport(chatId, report);
+                    }
+                });
+    }
+
+    private InputStream downloadImportFile(File file) throws IOException {
+        try {
+            return downloadFileAsStream(file);
+        } catch (TelegramApiException e) {
+            throw new IOException("Не удалось скачать файл: " + e.getMessage(), e);
+        }
+    }
+
+    private void reportImportFailure(Long chatId, Document document, Throwable e) {
+        if (e instanceof UncheckedIOException) {
+            log.warn("Failed to read import document {}", document.getFileName(), e);
+            sendMessage(chatId, "❌ Не удалось прочитать файл: " + e.getCause().getMessage());
+        } else if (e instanceof TelegramApiException) {
+            log.error("Failed to download import document {}", document.getFileId(), e);
+            sendMessage(chatId, "❌ Не удалось загрузить файл: " + e.getMessage());
+        } else {
+            log.error("Lesson import from {} failed", document.getFileName(), e);
+            sendMessage(chatId, "❌ Импорт прерван: " + e.getMessage());
+        }
+    }
+
+    private void sendImportReport(Long chatId, LessonImportService.ImportReport report) {
+        StringBuilder text = new StringBuilder();
+        text.append("✅ Импорт завершен за ").append(report.elapsedMs()).append(" мс\n\n");
+        text.append("Сохранено уроков: ").append(report.imported()).append("\n");
+        text.append("Отклонено: ").append(report.rejected()).append("\n");
+        if (!report.errors().isEmpty()) {
+            text.append("\nОшибки:\n");
+            for (String error : report.errors()) {
+                text.append("• ").append(error).append("\n");
+            }
+            if (report.rejected() > report.errors().size()) {
+                text.append("… и еще ").append(report.rejected() - report.errors().size()).append("\n");
             }
         }
+        // Ограничение Telegram на длину сообщения
+        sendMessage(chatId, text.length() > 4000 ? text.substring(0, 4000) + "…" : text.toString());
+    }
+
+    // Выгрузка каталога и прогресса: архив пишется во временный файл в потоке выгрузки
+    // (CatalogExportService.exportAsync) и отправляется документом, воркер обновлений не ждет
+    private void handleExportCommand(Long chatId, Long userId) {
+        if (!botConfig.isAdmin(userId)) {
+            sendMessage(chatId, "❌ У вас нет прав для выгрузки данных.");
+            return;
+        }
+        sendMessage(chatId, "⏳ Готовим выгрузку...");
+
+        catalogExportService.exportAsync().whenComplete((export, e) -> {
+            if (e != null) {
+                log.error("Failed to export catalog", e);
+                sendMessage(chatId, "❌ Не удалось подготовить выгрузку.");
+                return;
+            }
+            sendExportDocument(chatId, export);
+        });
+    }
+
+    private void sendExportDocument(Long chatId, CatalogExportService.ExportFile export) {
+        CatalogExportService.ExportSummary summary = export.summary();
+        SendDocument document = new SendDocument();
+        document.setChatId(chatId.toString());
+        document.setDocument(new InputFile(export.file().toFile(),
+                "arabic-bot-export-" + LocalDate.now() + ".zip"));
+        document.setCaption("📤 Уроков: " + summary.lessons() + ", записей прогресса: " + summary.progressRows() +
+                "\nlessons.json можно загрузить обратно через /import");
+        outboundMessageQueue.submit(chatId, Priority.NORMAL, document.getMethod(), () -> execute(document)).whenComplete((message, e) -> {
+            deleteQuietly(export.file());
+            if (e != null) {
+                log.error("Error sending export document", e);
+                sendMessage(chatId, "❌ Не удалось отправить выгрузку.");
+            }
+        });
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary file {}", file, e);
+        }
     }
 
     private void handleLessonCreateCommand(Long chatId, Long userId) {
@@ -218,14 +498,8 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         sendMessage(chatId, "Создание нового урока\n\nНазвание?");
     }
 
-    private void handleLessonCreationStep(Update update, Long userId, Long chatId, String messageText) {
-        LessonCreationState state = lessonCreationService.getState(userId);
-        
-        if (state == null) {
-            sendMessage(chatId, "Сессия создания урока истекла. Начните заново с /lesson_create");
-            return;
-        }
-
+    private void handleLessonCreationStep(Update update, Long userId, Long chatId, String messageText,
+                                          LessonCreationState state) {
         try {
             QuestionData currentQuestion = state.getCurrentQuestion();
             
@@ -290,9 +564,9 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
                     } else {
                         // Все вопросы заполнены, сохраняем урок
                         if (state.isComplete()) {
-                            Lesson lesson = lessonService.createLessonWithQuestion(state);
+                            LessonView lesson = lessonService.createLessonWithQuestion(state);
                             sendMessage(chatId, String.format("✅ Урок \"%s\" успешно создан! (ID: %d)", 
-                                    lesson.getTitle(), lesson.getId()));
+                                    lesson.title(), lesson.id()));
                             lessonCreationService.clearState(userId);
                             // Возвращаем админа в меню
                             if (botConfig.isAdmin(userId)) {
@@ -320,190 +594,15 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         Long userId = update.getCallbackQuery().getFrom().getId();
         Integer messageId = update.getCallbackQuery().getMessage().getMessageId();
 
+        DecodedCallback callback = DECODED_CALLBACK.get();
+        if (!callbackCodec.decode(callbackData, callback)) {
+            log.warn("Unrecognized callback data: {}", callbackData);
+            return;
+        }
+
         try {
-            if (callbackData.startsWith("lesson:")) {
-                // Выбор урока
-                Long lessonId = Long.parseLong(callbackData.split(":")[1]);
-                sendLesson(chatId, lessonId, userId);
-            } else if (callbackData.startsWith("answer:")) {
-                // Ответ на вопрос
-                String[] parts = callbackData.split(":", 5); // Ограничиваем split до 5 частей
-                Long lessonId = Long.parseLong(parts[1]);
-                Long questionId = Long.parseLong(parts[2]);
-                Long answerId = Long.parseLong(parts[3]);
-                // parts[4] содержит порядок всех answerId через запятую
-                String answerOrder = parts.length > 4 ? parts[4] : "";
-                handleAnswer(chatId, userId, lessonId, questionId, answerId, messageId, answerOrder);
-            } else if (callbackData.equals("next_lesson")) {
-                // Следующий урок
-                handleNextLesson(chatId, userId);
-            } else if (callbackData.equals("choose_lesson")) {
-                // Выбрать урок
-                sendLessonsList(chatId);
-            } else if (callbackData.startsWith("lessons_page:")) {
-                // Пагинация списка уроков
-                try {
-                    String[] parts = callbackData.split(":");
-                    if (parts.length >= 3) {
-                        String listType = parts[1];
-                        int page = Integer.parseInt(parts[2]);
-                        sendLessonsList(chatId, page, listType, messageId);
-                    } else {
-                        log.error("Invalid pagination callback format: {}", callbackData);
-                        sendMessage(chatId, "Ошибка навигации. Попробуйте выбрать урок заново.");
-                    }
-                } catch (NumberFormatException e) {
-                    log.error("Error parsing page number from callback: {}", callbackData, e);
-                    sendMessage(chatId, "Ошибка навигации. Попробуйте выбрать урок заново.");
-                }
-            } else if (callbackData.equals("answered")) {
-                // Игнорируем нажатия на уже отвеченные вопросы
-                return;
-            } else if (callbackData.equals("edit_cancel")) {
-                // Отмена редактирования
-                LessonEditState state = lessonEditService.getState(userId);
-                if (state != null) {
-                    sendMessage(chatId, "❌ Изменения отменены.");
-                    lessonEditService.clearState(userId);
-                }
-            } else if (callbackData.equals("edit_skip")) {
-                // Пропуск редактирования ответа
-                LessonEditState state = lessonEditService.getState(userId);
-                if (state != null && state.getCurrentStep() == LessonEditState.EditStep.EDIT_ANSWER) {
-                    state.setCurrentAnswerIndex(state.getCurrentAnswerIndex() + 1);
-                    List<TestAnswer> answers = lessonService.getAnswersForQuestion(state.getSelectedQuestionId());
-                    if (state.getCurrentAnswerIndex() < answers.size()) {
-                        sendNextAnswerEdit(chatId, state, answers);
-                    } else {
-                        sendMessage(chatId, "✅ Редактирование ответов завершено!");
-                        lessonEditService.clearState(userId);
-                        sendAdminMenu(chatId);
-                    }
-                }
-            } else if (callbackData.startsWith("edit_lesson:")) {
-                // Выбор урока для редактирования
-                Long lessonId = Long.parseLong(callbackData.split(":")[1]);
-                LessonEditState state = lessonEditService.getOrCreateState(userId);
-                state.setLessonId(lessonId);
-                state.setCurrentStep(LessonEditState.EditStep.SELECT_ACTION);
-                sendActionSelection(chatId, lessonId);
-            } else if (callbackData.startsWith("edit_action:")) {
-                // Выбор действия редактирования
-                String[] parts = callbackData.split(":");
-                String action = parts[1];
-                Long lessonId = Long.parseLong(parts[2]);
-                LessonEditState state = lessonEditService.getOrCreateState(userId);
-                state.setLessonId(lessonId);
-
-                switch (action) {
-                    case "title":
-                        state.setCurrentStep(LessonEditState.EditStep.EDIT_TITLE);
-                        state.setSelectedAction(LessonEditState.EditAction.CHANGE_TITLE);
-                        Optional<Lesson> lessonOptTitle = lessonService.getLessonById(lessonId);
-                        if (lessonOptTitle.isPresent()) {
-                            String currentTitle = lessonOptTitle.get().getTitle();
-                            sendMessageWithCancelButton(chatId, 
-                                "Текущее название:\n" + currentTitle + 
-                                "\n\nВведите новое название:");
-                        }
-                        break;
-                    case "video":
-                        state.setCurrentStep(LessonEditState.EditStep.EDIT_VIDEO);
-                        state.setSelectedAction(LessonEditState.EditAction.CHANGE_VIDEO);
-                        sendMessageWithCancelButton(chatId, "Отправьте новое видео для урока:");
-                        break;
-                    case "description":
-                        state.setCurrentStep(LessonEditState.EditStep.EDIT_DESCRIPTION);
-                        state.setSelectedAction(LessonEditState.EditAction.CHANGE_DESCRIPTION);
-                        Optional<Lesson> lessonOpt = lessonService.getLessonById(lessonId);
-                        if (lessonOpt.isPresent()) {
-                            String currentDesc = lessonOpt.get().getDescription();
-                            sendMessageWithCancelButton(chatId, 
-                                "Текущее описание:\n" + (currentDesc != null ? currentDesc : "(нет описания)") +
-                                "\n\nВведите новое описание:");
-                        }
-                        break;
-                    case "answers":
-                        state.setCurrentStep(LessonEditState.EditStep.SELECT_QUESTION_FOR_ANSWERS);
-                        sendQuestionSelectionForAnswers(chatId, lessonId);
-                        break;
-                    case "correct":
-                        state.setCurrentStep(LessonEditState.EditStep.SELECT_QUESTION_FOR_CORRECT);
-                        sendQuestionSelectionForCorrect(chatId, lessonId);
-                        break;
-                }
-            } else if (callbackData.startsWith("edit_question_answers:")) {
-                // Выбор вопроса для редактирования ответов
-                Long questionId = Long.parseLong(callbackData.split(":")[1]);
-                LessonEditState state = lessonEditService.getOrCreateState(userId);
-                state.setSelectedQuestionId(questionId);
-                state.setCurrentStep(LessonEditState.EditStep.EDIT_ANSWER);
-                state.setCurrentAnswerIndex(0);
-
-                Optional<TestQuestion> questionOpt = lessonService.getQuestionById(questionId);
-                if (questionOpt.isPresent()) {
-                    List<TestAnswer> answers = lessonService.getAnswersForQuestion(questionId);
-                    sendMessage(chatId, "Вопрос:\n" + questionOpt.get().getQuestion());
-                    if (!answers.isEmpty()) {
-                        sendNextAnswerEdit(chatId, state, answers);
-                    }
-                }
-            } else if (callbackData.startsWith("edit_question_correct:")) {
-                // Выбор вопроса для изменения правильного ответа
-                Long questionId = Long.parseLong(callbackData.split(":")[1]);
-                LessonEditState state = lessonEditService.getOrCreateState(userId);
-                state.setSelectedQuestionId(questionId);
-                state.setCurrentStep(LessonEditState.EditStep.SELECT_CORRECT_ANSWER);
-                sendCorrectAnswerSelection(chatId, questionId);
-            } else if (callbackData.startsWith("edit_correct:")) {
-                // Выбор нового правильного ответа
-                String[] parts = callbackData.split(":");
-                Long questionId = Long.parseLong(parts[1]);
-                int correctIndex = Integer.parseInt(parts[2]);
-                lessonService.updateCorrectAnswer(questionId, correctIndex);
-                sendMessage(chatId, "✅ Правильный ответ успешно обновлен!");
-                lessonEditService.clearState(userId);
-                sendAdminMenu(chatId);
-            } else if (callbackData.equals("admin_menu")) {
-                // Возврат в админ-меню
-                sendAdminMenu(chatId);
-            } else if (callbackData.equals("admin_create_lesson")) {
-                // Создание урока из меню
-                handleLessonCreateCommand(chatId, userId);
-            } else if (callbackData.equals("admin_edit_lesson")) {
-                // Редактирование урока из меню
-                handleEditLessonCommand(chatId, userId);
-            } else if (callbackData.equals("admin_delete_lesson")) {
-                // Удаление урока из меню
-                sendLessonsListForDelete(chatId);
-            } else if (callbackData.equals("admin_list_lessons")) {
-                // Список уроков из меню
-                sendLessonsListWithMenu(chatId);
-            } else if (callbackData.startsWith("delete_lesson:")) {
-                // Выбор урока для удаления
-                Long lessonId = Long.parseLong(callbackData.split(":")[1]);
-                sendDeleteConfirmation(chatId, lessonId);
-            } else if (callbackData.startsWith("confirm_delete:")) {
-                // Подтверждение удаления
-                Long lessonId = Long.parseLong(callbackData.split(":")[1]);
-                try {
-                    Optional<Lesson> lessonOpt = lessonService.getLessonById(lessonId);
-                    if (lessonOpt.isPresent()) {
-                        String lessonTitle = lessonOpt.get().getTitle();
-                        lessonService.deleteLesson(lessonId);
-                        sendMessage(chatId, "✅ Урок \"" + lessonTitle + "\" успешно удален!");
-                        sendAdminMenu(chatId);
-                    } else {
-                        sendMessage(chatId, "❌ Урок не найден.");
-                    }
-                } catch (Exception e) {
-                    log.error("Error deleting lesson", e);
-                    sendMessage(chatId, "❌ Произошла ошибка при удалении урока.");
-                }
-            } else if (callbackData.startsWith("cancel_delete:")) {
-                // Отмена удаления
-                sendMessage(chatId, "❌ Удаление отменено.");
-                sendAdminMenu(chatId);
+            if (!updateRouter.routeCallback(callback, chatId, userId, messageId)) {
+                log.warn("No route for callback action {}", callback.getAction());
             }
         } catch (Exception e) {
             log.error("Error handling callback: {}", callbackData, e);
@@ -511,175 +610,192 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         }
     }
 
-    private void sendLessonsList(Long chatId) {
-        sendLessonsList(chatId, 0, "list", null);
+    private void handleEditCancel(Long chatId, Long userId) {
+        // Отмена редактирования
+        LessonEditState state = lessonEditService.getState(userId);
+        if (state != null) {
+            sendMessage(chatId, "❌ Изменения отменены.");
+            lessonEditService.clearState(userId);
+        }
     }
 
-    private void sendLessonsList(Long chatId, int page, String listType, Integer messageId) {
-        List<Lesson> lessons = lessonService.getAllLessons();
-
-        // Логируем для отладки
-        if (lessons == null) {
-            log.error("Lessons list is null!");
-            if (messageId != null) {
-                EditMessageText editMessage = new EditMessageText();
-                editMessage.setChatId(chatId.toString());
-                editMessage.setMessageId(messageId);
-                editMessage.setText("Ошибка при загрузке уроков. Попробуйте позже.");
-                try {
-                    execute(editMessage);
-                } catch (TelegramApiException e) {
-                    log.error("Error updating message", e);
-                }
+    private void handleEditSkip(Long chatId, Long userId) {
+        // Пропуск редактирования ответа
+        LessonEditState state = lessonEditService.getState(userId);
+        if (state != null && state.getCurrentStep() == LessonEditState.EditStep.EDIT_ANSWER) {
+            state.setCurrentAnswerIndex(state.getCurrentAnswerIndex() + 1);
+            List<AnswerView> answers = lessonService.getAnswersForQuestion(state.getSelectedQuestionId());
+            if (state.getCurrentAnswerIndex() < answers.size()) {
+                sendNextAnswerEdit(chatId, state, answers);
             } else {
-                sendMessage(chatId, "Ошибка при загрузке уроков. Попробуйте позже.");
+                sendMessage(chatId, "✅ Редактирование ответов завершено!");
+                lessonEditService.clearState(userId);
+                sendAdminMenu(chatId);
             }
-            return;
         }
+    }
 
-        log.debug("Retrieved {} lessons from database", lessons.size());
+    private void handleEditLessonSelected(Long chatId, Long userId, Long lessonId) {
+        // Выбор урока для редактирования
+        LessonEditState state = lessonEditService.getOrCreateState(userId);
+        state.setLessonId(lessonId);
+        state.setCurrentStep(LessonEditState.EditStep.SELECT_ACTION);
+        sendActionSelection(chatId, lessonId);
+    }
 
-        if (lessons.isEmpty()) {
-            if (messageId != null) {
-                // Обновляем существующее сообщение
-                EditMessageText editMessage = new EditMessageText();
-                editMessage.setChatId(chatId.toString());
-                editMessage.setMessageId(messageId);
-                editMessage.setText("Уроки пока не добавлены.");
-                try {
-                    execute(editMessage);
-                } catch (TelegramApiException e) {
-                    log.error("Error updating message", e);
+    private void handleEditAction(Long chatId, Long userId, LessonEditState.EditAction action, Long lessonId) {
+        // Выбор действия редактирования
+        LessonEditState state = lessonEditService.getOrCreateState(userId);
+        state.setLessonId(lessonId);
+
+        switch (action) {
+            case CHANGE_TITLE:
+                state.setCurrentStep(LessonEditState.EditStep.EDIT_TITLE);
+                state.setSelectedAction(LessonEditState.EditAction.CHANGE_TITLE);
+                Optional<LessonView> lessonOptTitle = lessonService.getLessonById(lessonId);
+                if (lessonOptTitle.isPresent()) {
+                    String currentTitle = lessonOptTitle.get().title();
+                    sendMessageWithCancelButton(chatId, 
+                        "Текущее название:\n" + currentTitle + 
+                        "\n\nВведите новое название:");
                 }
-            } else {
-                sendMessage(chatId, "Уроки пока не добавлены.");
+                break;
+            case CHANGE_VIDEO:
+                state.setCurrentStep(LessonEditState.EditStep.EDIT_VIDEO);
+                state.setSelectedAction(LessonEditState.EditAction.CHANGE_VIDEO);
+                sendMessageWithCancelButton(chatId, "Отправьте новое видео для урока:");
+                break;
+            case CHANGE_DESCRIPTION:
+                state.setCurrentStep(LessonEditState.EditStep.EDIT_DESCRIPTION);
+                state.setSelectedAction(LessonEditState.EditAction.CHANGE_DESCRIPTION);
+                Optional<LessonView> lessonOpt = lessonService.getLessonById(lessonId);
+                if (lessonOpt.isPresent()) {
+                    String currentDesc = lessonOpt.get().description();
+                    sendMessageWithCancelButton(chatId, 
+                        "Текущее описание:\n" + (currentDesc != null ? currentDesc : "(нет описания)") +
+                        "\n\nВведите новое описание:");
+                }
+                break;
+            case EDIT_ANSWERS:
+                state.setCurrentStep(LessonEditState.EditStep.SELECT_QUESTION_FOR_ANSWERS);
+                sendQuestionSelectionForAnswers(chatId, lessonId);
+                break;
+            case CHANGE_CORRECT_ANSWER:
+                state.setCurrentStep(LessonEditState.EditStep.SELECT_QUESTION_FOR_CORRECT);
+                sendQuestionSelectionForCorrect(chatId, lessonId);
+                break;
+        }
+    }
+
+    private void handleEditQuestionAnswers(Long chatId, Long userId, Long questionId) {
+        // Выбор вопроса для редактирования ответов
+        LessonEditState state = lessonEditService.getOrCreateState(userId);
+        state.setSelectedQuestionId(questionId);
+        state.setCurrentStep(LessonEditState.EditStep.EDIT_ANSWER);
+        state.setCurrentAnswerIndex(0);
+
+        Optional<QuestionView> questionOpt = lessonService.getQuestionById(questionId);
+        if (questionOpt.isPresent()) {
+            List<AnswerView> answers = lessonService.getAnswersForQuestion(questionId);
+            sendMessage(chatId, "Вопрос:\n" + questionOpt.get().question());
+            if (!answers.isEmpty()) {
+                sendNextAnswerEdit(chatId, state, answers);
             }
-            return;
         }
+    }
 
-        int pageSize = 50;
-        int totalPages = (int) Math.ceil((double) lessons.size() / pageSize);
-        
-        // Проверяем валидность страницы
-        if (page < 0) {
-            page = 0;
+    private void handleEditQuestionCorrect(Long chatId, Long userId, Long questionId) {
+        // Выбор вопроса для изменения правильного ответа
+        LessonEditState state = lessonEditService.getOrCreateState(userId);
+        state.setSelectedQuestionId(questionId);
+        state.setCurrentStep(LessonEditState.EditStep.SELECT_CORRECT_ANSWER);
+        sendCorrectAnswerSelection(chatId, questionId);
+    }
+
+    private void handleEditCorrect(Long chatId, Long userId, Long questionId, int correctIndex) {
+        // Выбор нового правильного ответа. Кнопка несет только вопрос, поэтому урок берем по вопросу,
+        // а не из сессии редактирования: кнопка остается рабочей и после истечения сессии
+        Optional<Long> lessonId = lessonService.getLessonIdForQuestion(questionId);
+        if (lessonId.isEmpty()) {
+            sendMessage(chatId, "❌ Вопрос не найден.");
+            return;
         }
-        if (page >= totalPages) {
-            page = totalPages - 1;
+        lessonService.updateCorrectAnswer(lessonId.get(), questionId, correctIndex);
+        sendMessage(chatId, "✅ Правильный ответ успешно обновлен!");
+        lessonEditService.clearState(userId);
+        sendAdminMenu(chatId);
+    }
+
+    private void handleConfirmDelete(Long chatId, Long lessonId) {
+        // Подтверждение удаления
+        try {
+            Optional<LessonView> lessonOpt = lessonService.getLessonById(lessonId);
+            if (lessonOpt.isPresent()) {
+                String lessonTitle = lessonOpt.get().title();
+                lessonService.deleteLesson(lessonId);
+                sendMessage(chatId, "✅ Урок \"" + lessonTitle + "\" успешно удален!");
+                sendAdminMenu(chatId);
+            } else {
+                sendMessage(chatId, "❌ Урок не найден.");
+            }
+        } catch (Exception e) {
+            log.error("Error deleting lesson", e);
+            sendMessage(chatId, "❌ Произошла ошибка при удалении урока.");
         }
-        
-        int startIndex = page * pageSize;
-        int endIndex = Math.min(startIndex + pageSize, lessons.size());
-        
-        // Проверяем, что есть уроки для отображения
-        if (startIndex >= lessons.size() || startIndex < 0) {
+    }
+
+    private void handleCancelDelete(Long chatId) {
+        // Отмена удаления
+        sendMessage(chatId, "❌ Удаление отменено.");
+        sendAdminMenu(chatId);
+    }
+
+    private void sendLessonsList(Long chatId) {
+        sendLessonsList(chatId, 0, "list", null);
+    }
+
+    private void sendLessonsList(Long chatId, int page, String listType, Integer messageId) {
+        // Страница берется готовой из кэша текущей версии каталога
+        LessonListPageCache.LessonListPage lessonsPage = lessonListPageCache.getPage(listType, page);
+
+        if (lessonsPage == null) {
             if (messageId != null) {
+                // Обновляем существующее сообщение
                 EditMessageText editMessage = new EditMessageText();
                 editMessage.setChatId(chatId.toString());
                 editMessage.setMessageId(messageId);
                 editMessage.setText("Уроки пока не добавлены.");
-                try {
-                    execute(editMessage);
-                } catch (TelegramApiException e) {
-                    log.error("Error updating message", e);
-                }
+                send(chatId, editMessage, Priority.HIGH, "Error updating message");
             } else {
                 sendMessage(chatId, "Уроки пока не добавлены.");
             }
             return;
         }
 
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        // Добавляем уроки для текущей страницы
-        for (int i = startIndex; i < endIndex; i++) {
-            Lesson lesson = lessons.get(i);
-            InlineKeyboardButton button = new InlineKeyboardButton();
-            button.setText(lesson.getTitle());
-            
-            // Определяем callback в зависимости от типа списка
-            if ("edit".equals(listType)) {
-                button.setCallbackData("edit_lesson:" + lesson.getId());
-            } else if ("delete".equals(listType)) {
-                button.setCallbackData("delete_lesson:" + lesson.getId());
-            } else {
-                button.setCallbackData("lesson:" + lesson.getId());
-            }
-            rows.add(Collections.singletonList(button));
-        }
-
-        // Добавляем кнопки навигации
-        List<InlineKeyboardButton> navRow = new ArrayList<>();
-        if (page > 0) {
-            InlineKeyboardButton prevButton = new InlineKeyboardButton();
-            prevButton.setText("◀️ Предыдущие");
-            prevButton.setCallbackData("lessons_page:" + listType + ":" + (page - 1));
-            navRow.add(prevButton);
-        }
-        if (page < totalPages - 1) {
-            InlineKeyboardButton nextButton = new InlineKeyboardButton();
-            nextButton.setText("Далее ▶️");
-            nextButton.setCallbackData("lessons_page:" + listType + ":" + (page + 1));
-            navRow.add(nextButton);
-        }
-        if (!navRow.isEmpty()) {
-            rows.add(navRow);
-        }
-
-        // Добавляем кнопку возврата в меню для админских списков
-        if ("admin".equals(listType) || "edit".equals(listType) || "delete".equals(listType)) {
-            InlineKeyboardButton backButton = new InlineKeyboardButton();
-            backButton.setText("◀️ Назад в меню");
-            backButton.setCallbackData("admin_menu");
-            rows.add(Collections.singletonList(backButton));
-        }
-
-        keyboard.setKeyboard(rows);
-
-        String text = "📚 Выберите урок:";
-        if ("edit".equals(listType)) {
-            text = "Выберите урок для редактирования:";
-        } else if ("delete".equals(listType)) {
-            text = "Выберите урок для удаления:";
-        }
-        if (totalPages > 1) {
-            text += "\n\nСтраница " + (page + 1) + " из " + totalPages;
-        }
-
         if (messageId != null) {
             // Обновляем существующее сообщение
             EditMessageText editMessage = new EditMessageText();
             editMessage.setChatId(chatId.toString());
             editMessage.setMessageId(messageId);
-            editMessage.setText(text);
-            editMessage.setReplyMarkup(keyboard);
-            try {
-                execute(editMessage);
-            } catch (TelegramApiException e) {
+            editMessage.setText(lessonsPage.text());
+            editMessage.setReplyMarkup(lessonsPage.keyboard());
+            send(chatId, editMessage, Priority.HIGH).exceptionally(e -> {
                 log.error("Error updating lessons list, sending new message instead", e);
                 // Если не удалось обновить, отправляем новое сообщение
                 SendMessage message = new SendMessage();
                 message.setChatId(chatId.toString());
-                message.setText(text);
-                message.setReplyMarkup(keyboard);
-                try {
-                    execute(message);
-                } catch (TelegramApiException e2) {
-                    log.error("Error sending lessons list", e2);
-                }
-            }
+                message.setText(lessonsPage.text());
+                message.setReplyMarkup(lessonsPage.keyboard());
+                send(chatId, message, "Error sending lessons list");
+                return null;
+            });
         } else {
             // Отправляем новое сообщение
             SendMessage message = new SendMessage();
             message.setChatId(chatId.toString());
-            message.setText(text);
-            message.setReplyMarkup(keyboard);
-            try {
-                execute(message);
-            } catch (TelegramApiException e) {
-                log.error("Error sending lessons list", e);
-            }
+            message.setText(lessonsPage.text());
+            message.setReplyMarkup(lessonsPage.keyboard());
+            send(chatId, message, "Error sending lessons list");
         }
     }
 
@@ -688,244 +804,135 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
     }
 
     private void sendLesson(Long chatId, Long lessonId, Long userId) {
-        Optional<Lesson> lessonOpt = lessonService.getLessonById(lessonId);
+        Optional<LessonView> lessonOpt = lessonService.getLessonById(lessonId);
 
         if (lessonOpt.isEmpty()) {
             sendMessage(chatId, "Урок не найден.");
             return;
         }
 
-        Lesson lesson = lessonOpt.get();
+        LessonView lesson = lessonOpt.get();
+
+        // Отменяем отложенные вопросы и кнопки предыдущего урока
+        delayedActionScheduler.cancel(userId);
 
         // Обновляем прогресс пользователя
         userProgressService.updateCurrentLesson(userId, lessonId);
-
-        // Отправляем видео
-        sendVideo(chatId, lesson.getVideoFileId());
-
-        // Отправляем описание
-        String description = "📝 " + lesson.getTitle() + "\n\n" +
-                           (lesson.getDescription() != null ? lesson.getDescription() : "");
-        sendMessage(chatId, description);
-
-        // Отправляем первый вопрос теста
-        Optional<TestQuestion> questionOpt = lessonService.getFirstQuestionForLesson(lessonId);
-
-        if (questionOpt.isPresent()) {
-            sendTestQuestion(chatId, questionOpt.get());
-        } else {
-            sendMessage(chatId, "Вопросы для этого урока пока не добавлены.");
-        }
+        userStatsService.recordLessonStarted(userId, lessonId);
+
+        String description = "📝 " + lesson.title() + "\n\n" +
+                           (lesson.description() != null ? lesson.description() : "");
+        QuizPlan plan = quizPlanService.getPlan(lessonId);
+
+        // Видео -> описание -> первый вопрос: каждый шаг ставится в очередь после подтверждения
+        // предыдущего, поток обработки не ждет Telegram. Ошибка на любом шаге отменяет остальные.
+        sendVideo(chatId, lesson.videoFileId())
+                .thenCompose(video -> send(chatId, textMessage(chatId, description), Priority.NORMAL))
+                .thenCompose(message -> plan.getQuestionCount() > 0
+                        ? sendTestQuestion(chatId, plan, 0)
+                        : send(chatId, textMessage(chatId, "Вопросы для этого урока пока не добавлены."), Priority.NORMAL))
+                .whenComplete((message, e) -> {
+                    if (e != null) {
+                        log.error("Error delivering lesson {} to chat {}", lessonId, chatId, e);
+                        sendMessage(chatId, "Не удалось отправить урок. Попробуйте открыть его еще раз.");
+                    }
+                });
     }
 
 
-    private void sendVideo(Long chatId, String videoFileId) {
+    private CompletableFuture<Message> sendVideo(Long chatId, String videoFileId) {
         SendVideo video = new SendVideo();
         video.setChatId(chatId.toString());
         video.setVideo(new InputFile(videoFileId));
 
-        try {
-            execute(video);
-        } catch (TelegramApiException e) {
-            log.error("Error sending video", e);
-        }
+        return outboundMessageQueue.submit(chatId, Priority.NORMAL, video.getMethod(), () -> execute(video));
     }
 
 
-    private void sendTestQuestion(Long chatId, TestQuestion question) {
-        if (question.getAnswers() == null || question.getAnswers().size() < 4) {
-            sendMessage(chatId, "Для вопроса должно быть 4 варианта ответа.");
-            return;
+    private CompletableFuture<Message> sendTestQuestion(Long chatId, QuizPlan plan, int questionIndex) {
+        if (plan.getAnswerCount(questionIndex) != CallbackCodec.ANSWER_SLOTS) {
+            return send(chatId, textMessage(chatId, "Для вопроса должно быть 4 варианта ответа."), Priority.NORMAL);
         }
 
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        // Перемешиваем ответы для случайного порядка
-        List<TestAnswer> shuffledAnswers = new ArrayList<>(question.getAnswers());
-        Collections.shuffle(shuffledAnswers);
-
-        // Сохраняем порядок всех answerId для последующего обновления сообщения
-        StringBuilder orderBuilder = new StringBuilder();
-        for (TestAnswer answer : shuffledAnswers) {
-            if (orderBuilder.length() > 0) {
-                orderBuilder.append(",");
-            }
-            orderBuilder.append(answer.getId());
-        }
-        String answerOrder = orderBuilder.toString();
-
-        // Создаем кнопки с ответами (A, B, C, D)
-        char label = 'A';
-        for (TestAnswer answer : shuffledAnswers) {
-            InlineKeyboardButton button = new InlineKeyboardButton();
-            button.setText(label + ". " + answer.getText());
-            // Формат: answer:lessonId:questionId:answerId:order (order содержит все answerId через запятую)
-            button.setCallbackData("answer:" + question.getLesson().getId() + ":" + 
-                                 question.getId() + ":" + answer.getId() + ":" + answerOrder);
-            rows.add(Collections.singletonList(button));
-            label++;
-        }
-
-        keyboard.setKeyboard(rows);
-
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
-        message.setText("❓ " + question.getQuestion());
-        message.setReplyMarkup(keyboard);
+        message.setText("❓ " + plan.getQuestionText(questionIndex));
+        message.setReplyMarkup(keyboards.question(plan, questionIndex, ThreadLocalRandom.current()));
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Error sending test question", e);
-        }
+        CompletableFuture<Message> sent = send(chatId, message, Priority.NORMAL);
+        sent.whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("Error sending test question", e);
+            }
+        });
+        return sent;
     }
 
     private void handleAnswer(Long chatId, Long userId, Long lessonId, Long questionId, 
-                             Long answerId, Integer messageId, String answerOrder) {
-        Optional<TestQuestion> questionOpt = lessonService.getQuestionById(questionId);
-        if (questionOpt.isEmpty()) {
+                             Long answerId, Integer messageId, int permutation) {
+        // Проверка ответа идет по скомпилированному плану урока, без запросов к БД
+        QuizPlan plan = quizPlanService.getPlan(lessonId);
+        int questionIndex = plan.indexOfQuestion(questionId);
+        if (questionIndex < 0) {
             sendMessage(chatId, "Вопрос не найден.");
             return;
         }
 
-        TestQuestion question = questionOpt.get();
-        
-        // Находим выбранный ответ и правильный ответ
-        TestAnswer selectedAnswer = null;
-        TestAnswer correctAnswer = null;
-        
-        for (TestAnswer answer : question.getAnswers()) {
-            if (answer.getId().equals(answerId)) {
-                selectedAnswer = answer;
-            }
-            if (answer.getIsCorrect()) {
-                correctAnswer = answer;
-            }
-        }
-
-        if (selectedAnswer == null) {
+        int selectedIndex = plan.indexOfAnswer(questionIndex, answerId);
+        if (selectedIndex < 0) {
             sendMessage(chatId, "Ответ не найден.");
             return;
         }
 
-        // Сохраняем прогресс
+        // Сохраняем прогресс и попытку в историю (запись в БД идет в фоне)
         userProgressService.saveOrUpdateProgress(userId, lessonId, questionId);
+        boolean correct = plan.isCorrect(questionIndex, selectedIndex);
+        quizAttemptLog.record(userId, lessonId, questionId, answerId, correct);
+        userStatsService.recordAnswer(userId, lessonId, correct, !plan.hasNextQuestion(questionIndex));
 
         // Обновляем существующее сообщение с результатами
-        updateQuestionMessageWithResults(chatId, messageId, question, selectedAnswer, correctAnswer, answerOrder);
+        updateQuestionMessageWithResults(chatId, messageId, plan, questionIndex, selectedIndex, permutation);
 
-        // Проверяем, есть ли следующий вопрос
-        Optional<TestQuestion> nextQuestionOpt = lessonService.getNextQuestionForLesson(lessonId, questionId);
-        
-        if (nextQuestionOpt.isPresent()) {
-            // Показываем следующий вопрос
-            try {
-                Thread.sleep(1000); // Небольшая задержка перед следующим вопросом
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-            sendTestQuestion(chatId, nextQuestionOpt.get());
+        if (plan.hasNextQuestion(questionIndex)) {
+            // Показываем следующий вопрос после небольшой задержки, не занимая поток обработки
+            scheduleForUser(userId, NEXT_QUESTION_DELAY_MS, () -> sendTestQuestion(chatId, plan, questionIndex + 1));
         } else {
             // Все вопросы пройдены, показываем кнопки навигации
-            try {
-                Thread.sleep(1500); // Небольшая задержка перед показом кнопок
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-            sendNavigationButtons(chatId, lessonId);
+            scheduleForUser(userId, NAVIGATION_DELAY_MS, () -> sendNavigationButtons(chatId, lessonId));
         }
     }
 
-    private void updateQuestionMessageWithResults(Long chatId, Integer messageId, TestQuestion question,
-                                                  TestAnswer selectedAnswer, TestAnswer correctAnswer, String answerOrder) {
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        // Восстанавливаем порядок ответов из answerOrder
-        List<TestAnswer> orderedAnswers = new ArrayList<>();
-        if (answerOrder != null && !answerOrder.isEmpty()) {
-            String[] answerIds = answerOrder.split(",");
-            // Создаем Map для быстрого поиска ответов по ID
-            Map<Long, TestAnswer> answerMap = new HashMap<>();
-            for (TestAnswer answer : question.getAnswers()) {
-                answerMap.put(answer.getId(), answer);
-            }
-            // Восстанавливаем порядок
-            for (String answerIdStr : answerIds) {
-                Long answerId = Long.parseLong(answerIdStr);
-                TestAnswer answer = answerMap.get(answerId);
-                if (answer != null) {
-                    orderedAnswers.add(answer);
-                }
+    private void scheduleForUser(Long userId, long delayMs, Runnable action) {
+        // Отложенное действие возвращается в очередь пользователя, чтобы сохранить порядок его сообщений.
+        // Это продолжение уже принятого обновления, поэтому оно не ждет места в переполненной очереди.
+        delayedActionScheduler.schedule(userId, delayMs, task -> {
+            if (!updateDispatcher.dispatchFollowUp(userId, task)) {
+                throw new RejectedExecutionException("Update dispatcher is shut down");
             }
-        } else {
-            // Если порядок не сохранен, используем исходный порядок
-            orderedAnswers = question.getAnswers();
-        }
-
-        // Создаем кнопки с результатами в том же порядке, что и в исходном сообщении
-        char label = 'A';
-        for (TestAnswer answer : orderedAnswers) {
-            InlineKeyboardButton button = new InlineKeyboardButton();
-            String prefix = "";
-            
-            if (answer.getId().equals(correctAnswer.getId())) {
-                prefix = "✅ ";
-            } else if (answer.getId().equals(selectedAnswer.getId()) && !selectedAnswer.getIsCorrect()) {
-                prefix = "❌ ";
-            }
-            
-            button.setText(prefix + label + ". " + answer.getText());
-            button.setCallbackData("answered"); // Отключаем кнопки
-            rows.add(Collections.singletonList(button));
-            label++;
-        }
+        }, action);
+    }
 
-        keyboard.setKeyboard(rows);
+    private void updateQuestionMessageWithResults(Long chatId, Integer messageId, QuizPlan plan, int questionIndex,
+                                                  int selectedIndex, int permutation) {
+        boolean correct = plan.isCorrect(questionIndex, selectedIndex);
 
         EditMessageText editMessage = new EditMessageText();
         editMessage.setChatId(chatId.toString());
         editMessage.setMessageId(messageId);
-        editMessage.setText("❓ " + question.getQuestion() + 
-                          (selectedAnswer.getIsCorrect() ? "\n\n✅ Верно!" : "\n\n❌ Неверно"));
-        editMessage.setReplyMarkup(keyboard);
+        editMessage.setText("❓ " + plan.getQuestionText(questionIndex) + 
+                          (correct ? "\n\n✅ Верно!" : "\n\n❌ Неверно"));
+        editMessage.setReplyMarkup(keyboards.answeredQuestion(plan, questionIndex, selectedIndex, permutation));
 
-        try {
-            execute(editMessage);
-        } catch (TelegramApiException e) {
-            log.error("Error updating message with results", e);
-        }
+        send(chatId, editMessage, Priority.HIGH, "Error updating message with results");
     }
 
     private void sendNavigationButtons(Long chatId, Long currentLessonId) {
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        // Кнопка "Следующий урок"
-        InlineKeyboardButton nextButton = new InlineKeyboardButton();
-        nextButton.setText("➡️ Следующий урок");
-        nextButton.setCallbackData("next_lesson");
-        rows.add(Collections.singletonList(nextButton));
-
-        // Кнопка "Выбрать урок"
-        InlineKeyboardButton chooseButton = new InlineKeyboardButton();
-        chooseButton.setText("📚 Выбрать урок");
-        chooseButton.setCallbackData("choose_lesson");
-        rows.add(Collections.singletonList(chooseButton));
-
-        keyboard.setKeyboard(rows);
-
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText("🎉 Урок завершен!\n\nЧто дальше?");
-        message.setReplyMarkup(keyboard);
+        message.setReplyMarkup(keyboards.lessonNavigation());
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Error sending navigation buttons", e);
-        }
+        send(chatId, message, "Error sending navigation buttons");
     }
 
     private void handleNextLesson(Long chatId, Long userId) {
@@ -941,10 +948,10 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
             return;
         }
 
-        Optional<Lesson> nextLessonOpt = lessonService.getNextLesson(currentLessonId);
+        Optional<LessonView> nextLessonOpt = lessonService.getNextLesson(currentLessonId);
         
         if (nextLessonOpt.isPresent()) {
-            sendLesson(chatId, nextLessonOpt.get().getId(), userId);
+            sendLesson(chatId, nextLessonOpt.get().id(), userId);
         } else {
             sendMessage(chatId, "🎉 Поздравляем! Вы прошли все уроки!");
             sendLessonsList(chatId);
@@ -952,28 +959,39 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
     }
 
     private void sendMessage(Long chatId, String text) {
+        send(chatId, textMessage(chatId, text), "Error sending message");
+    }
+
+    private SendMessage textMessage(Long chatId, String text) {
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText(text);
+        return message;
+    }
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Error sending message", e);
-        }
+    private <T extends Serializable> CompletableFuture<T> send(Long chatId, BotApiMethod<T> method, Priority priority) {
+        return outboundMessageQueue.submit(chatId, priority, method.getMethod(), () -> execute(method));
+    }
+
+    private <T extends Serializable> void send(Long chatId, BotApiMethod<T> method, Priority priority, String errorMessage) {
+        send(chatId, method, priority).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error(errorMessage, e);
+            }
+        });
+    }
+
+    private <T extends Serializable> void send(Long chatId, BotApiMethod<T> method, String errorMessage) {
+        send(chatId, method, Priority.NORMAL, errorMessage);
     }
 
     private void sendMessageWithKeyboard(Long chatId, String text, Long userId) {
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText(text);
-        message.setReplyMarkup(createMainKeyboard(botConfig.isAdmin(userId)));
+        message.setReplyMarkup(keyboards.mainKeyboard(botConfig.isAdmin(userId)));
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Error sending message with keyboard", e);
-        }
+        send(chatId, message, "Error sending message with keyboard");
     }
 
     private void sendHelpMessage(Long chatId, Long userId) {
@@ -987,25 +1005,36 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         if (botConfig.isAdmin(userId)) {
             helpText.append("\n🔧 Админ-команды:\n");
             helpText.append("🔧 Админ-меню - открыть панель администратора\n");
+            helpText.append("/import - импорт уроков из файла JSON или CSV\n");
+            helpText.append("/export - выгрузка уроков и прогресса учеников\n");
         }
         
         sendMessageWithKeyboard(chatId, helpText.toString(), userId);
     }
 
     private void sendProfileMessage(Long chatId, Long userId) {
-        Optional<UserProgress> progressOpt = userProgressService.getUserProgress(userId);
+        // Вся статистика — одна строка из кэша, название урока — из каталога в памяти
+        UserStats stats = userStatsService.getStats(userId);
         
         StringBuilder profileText = new StringBuilder();
         profileText.append("📊 Ваш профиль\n\n");
         
-        if (progressOpt.isPresent()) {
-            UserProgress progress = progressOpt.get();
-            if (progress.getCurrentLessonId() != null) {
-                Optional<Lesson> lessonOpt = lessonService.getLessonById(progress.getCurrentLessonId());
+        if (stats.getCurrentLessonId() != null || stats.getAnswersTotal() > 0) {
+            if (stats.getCurrentLessonId() != null) {
+                Optional<LessonView> lessonOpt = lessonService.getLessonById(stats.getCurrentLessonId());
                 if (lessonOpt.isPresent()) {
-                    profileText.append("Текущий урок: ").append(lessonOpt.get().getTitle()).append("\n");
+                    profileText.append("Текущий урок: ").append(lessonOpt.get().title()).append("\n");
                 }
             }
+            profileText.append("Завершено уроков: ").append(stats.getLessonsCompleted()).append("\n");
+            if (stats.getAnswersTotal() > 0) {
+                long accuracy = Math.round(stats.getAnswersCorrect() * 100.0 / stats.getAnswersTotal());
+                profileText.append("Верных ответов: ").append(stats.getAnswersCorrect())
+                        .append(" из ").append(stats.getAnswersTotal())
+                        .append(" (").append(accuracy).append("%)\n");
+            }
+            profileText.append("Дней подряд: ").append(userStatsService.getActiveStreak(stats))
+                    .append(" (рекорд: ").append(stats.getBestStreak()).append(")\n");
             profileText.append("\nПродолжайте обучение!");
         } else {
             profileText.append("Вы еще не начали прохождение уроков.\n");
@@ -1037,8 +1066,8 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         sendLessonsList(chatId, 0, "edit", null);
     }
 
-    private void handleLessonEditStep(Update update, Long userId, Long chatId, String messageText) {
-        LessonEditState state = lessonEditService.getState(userId);
+    private void handleLessonEditStep(Update update, Long userId, Long chatId, String messageText,
+                                      LessonEditState state) {
 
         if (state == null) {
             sendMessage(chatId, "Сессия редактирования истекла. Начните заново с /изменить существующий");
@@ -1064,10 +1093,10 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
                     break;
 
                 case EDIT_ANSWER:
-                    List<TestAnswer> answers = lessonService.getAnswersForQuestion(state.getSelectedQuestionId());
+                    List<AnswerView> answers = lessonService.getAnswersForQuestion(state.getSelectedQuestionId());
                     if (state.getCurrentAnswerIndex() < answers.size()) {
-                        TestAnswer answer = answers.get(state.getCurrentAnswerIndex());
-                        lessonService.updateAnswerText(answer.getId(), messageText);
+                        AnswerView answer = answers.get(state.getCurrentAnswerIndex());
+                        lessonService.updateAnswerText(state.getLessonId(), answer.id(), messageText);
                         state.setCurrentAnswerIndex(state.getCurrentAnswerIndex() + 1);
                         
                         if (state.getCurrentAnswerIndex() < answers.size()) {
@@ -1091,103 +1120,41 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         }
     }
 
-    private void sendNextAnswerEdit(Long chatId, LessonEditState state, List<TestAnswer> answers) {
-        TestAnswer currentAnswer = answers.get(state.getCurrentAnswerIndex());
+    private void sendNextAnswerEdit(Long chatId, LessonEditState state, List<AnswerView> answers) {
+        AnswerView currentAnswer = answers.get(state.getCurrentAnswerIndex());
         sendMessageWithSkipButton(chatId, String.format("Ответ %d:\n%s\n\nВведите новый текст:",
-                state.getCurrentAnswerIndex() + 1, currentAnswer.getText()));
+                state.getCurrentAnswerIndex() + 1, currentAnswer.text()));
     }
 
     private void sendActionSelection(Long chatId, Long lessonId) {
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        InlineKeyboardButton titleButton = new InlineKeyboardButton();
-        titleButton.setText("1️⃣ Поменять название");
-        titleButton.setCallbackData("edit_action:title:" + lessonId);
-        rows.add(Collections.singletonList(titleButton));
-
-        InlineKeyboardButton videoButton = new InlineKeyboardButton();
-        videoButton.setText("2️⃣ Поменять видео");
-        videoButton.setCallbackData("edit_action:video:" + lessonId);
-        rows.add(Collections.singletonList(videoButton));
-
-        InlineKeyboardButton descButton = new InlineKeyboardButton();
-        descButton.setText("3️⃣ Поменять описание");
-        descButton.setCallbackData("edit_action:description:" + lessonId);
-        rows.add(Collections.singletonList(descButton));
-
-        InlineKeyboardButton answersButton = new InlineKeyboardButton();
-        answersButton.setText("4️⃣ Редактировать варианты ответа");
-        answersButton.setCallbackData("edit_action:answers:" + lessonId);
-        rows.add(Collections.singletonList(answersButton));
-
-        InlineKeyboardButton correctButton = new InlineKeyboardButton();
-        correctButton.setText("5️⃣ Поменять правильный ответ");
-        correctButton.setCallbackData("edit_action:correct:" + lessonId);
-        rows.add(Collections.singletonList(correctButton));
-
-        keyboard.setKeyboard(rows);
-
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText("Выберите, что хотите изменить:");
-        message.setReplyMarkup(keyboard);
+        message.setReplyMarkup(keyboards.actionSelection(lessonId));
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Error sending action selection", e);
-        }
+        send(chatId, message, "Error sending action selection");
     }
 
     private void sendMessageWithCancelButton(Long chatId, String text) {
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        InlineKeyboardButton cancelButton = new InlineKeyboardButton();
-        cancelButton.setText("❌ Отмена");
-        cancelButton.setCallbackData("edit_cancel");
-        rows.add(Collections.singletonList(cancelButton));
-
-        keyboard.setKeyboard(rows);
-
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText(text);
-        message.setReplyMarkup(keyboard);
+        message.setReplyMarkup(keyboards.cancel());
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Error sending message with cancel button", e);
-        }
+        send(chatId, message, "Error sending message with cancel button");
     }
 
     private void sendMessageWithSkipButton(Long chatId, String text) {
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        InlineKeyboardButton skipButton = new InlineKeyboardButton();
-        skipButton.setText("⏭️ Пропустить");
-        skipButton.setCallbackData("edit_skip");
-        rows.add(Collections.singletonList(skipButton));
-
-        keyboard.setKeyboard(rows);
-
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText(text);
-        message.setReplyMarkup(keyboard);
+        message.setReplyMarkup(keyboards.skip());
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Error sending message with skip button", e);
-        }
+        send(chatId, message, "Error sending message with skip button");
     }
 
     private void sendQuestionSelectionForAnswers(Long chatId, Long lessonId) {
-        List<TestQuestion> questions = lessonService.getAllQuestionsForLesson(lessonId);
+        List<QuestionView> questions = lessonService.getAllQuestionsForLesson(lessonId);
 
         InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
@@ -1195,7 +1162,7 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         for (int i = 0; i < questions.size(); i++) {
             InlineKeyboardButton button = new InlineKeyboardButton();
             button.setText("Вопрос " + (i + 1));
-            button.setCallbackData("edit_question_answers:" + questions.get(i).getId());
+            button.setCallbackData(callbackCodec.encode(CallbackAction.EDIT_QUESTION_ANSWERS, questions.get(i).id()));
             rows.add(Collections.singletonList(button));
         }
 
@@ -1206,15 +1173,11 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         message.setText("Выберите вопрос:");
         message.setReplyMarkup(keyboard);
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Error sending question selection for answers", e);
-        }
+        send(chatId, message, "Error sending question selection for answers");
     }
 
     private void sendQuestionSelectionForCorrect(Long chatId, Long lessonId) {
-        List<TestQuestion> questions = lessonService.getAllQuestionsForLesson(lessonId);
+        List<QuestionView> questions = lessonService.getAllQuestionsForLesson(lessonId);
 
         InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
@@ -1222,7 +1185,7 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         for (int i = 0; i < questions.size(); i++) {
             InlineKeyboardButton button = new InlineKeyboardButton();
             button.setText("Вопрос " + (i + 1));
-            button.setCallbackData("edit_question_correct:" + questions.get(i).getId());
+            button.setCallbackData(callbackCodec.encode(CallbackAction.EDIT_QUESTION_CORRECT, questions.get(i).id()));
             rows.add(Collections.singletonList(button));
         }
 
@@ -1233,18 +1196,14 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         message.setText("Выберите вопрос:");
         message.setReplyMarkup(keyboard);
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Error sending question selection for correct", e);
-        }
+        send(chatId, message, "Error sending question selection for correct");
     }
 
     private void sendCorrectAnswerSelection(Long chatId, Long questionId) {
-        List<TestAnswer> answers = lessonService.getAnswersForQuestion(questionId);
+        List<AnswerView> answers = lessonService.getAnswersForQuestion(questionId);
         int currentCorrect = -1;
         for (int i = 0; i < answers.size(); i++) {
-            if (answers.get(i).getIsCorrect()) {
+            if (answers.get(i).correct()) {
                 currentCorrect = i + 1;
                 break;
             }
@@ -1259,7 +1218,7 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
             if (i + 1 == currentCorrect) {
                 prefix = "✅ ";
             }
-            messageText.append(prefix).append(i + 1).append(". ").append(answers.get(i).getText()).append("\n");
+            messageText.append(prefix).append(i + 1).append(". ").append(answers.get(i).text()).append("\n");
         }
         
         messageText.append("\nТекущий правильный ответ: ").append(currentCorrect);
@@ -1275,7 +1234,7 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
                 text += " ✅";
             }
             button.setText(text);
-            button.setCallbackData("edit_correct:" + questionId + ":" + (i + 1));
+            button.setCallbackData(callbackCodec.encode(CallbackAction.EDIT_CORRECT, questionId, i + 1));
             rows.add(Collections.singletonList(button));
         }
 
@@ -1286,51 +1245,18 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         message.setText(messageText.toString());
         message.setReplyMarkup(keyboard);
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Error sending correct answer selection", e);
-        }
+        send(chatId, message, "Error sending correct answer selection");
     }
 
     // ========== Админ-меню ==========
 
     private void sendAdminMenu(Long chatId) {
-        InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
-
-        InlineKeyboardButton createButton = new InlineKeyboardButton();
-        createButton.setText("➕ Создать урок");
-        createButton.setCallbackData("admin_create_lesson");
-        rows.add(Collections.singletonList(createButton));
-
-        InlineKeyboardButton editButton = new InlineKeyboardButton();
-        editButton.setText("✏️ Изменить урок");
-        editButton.setCallbackData("admin_edit_lesson");
-        rows.add(Collections.singletonList(editButton));
-
-        InlineKeyboardButton deleteButton = new InlineKeyboardButton();
-        deleteButton.setText("🗑️ Удалить урок");
-        deleteButton.setCallbackData("admin_delete_lesson");
-        rows.add(Collections.singletonList(deleteButton));
-
-        InlineKeyboardButton listButton = new InlineKeyboardButton();
-        listButton.setText("📚 Список уроков");
-        listButton.setCallbackData("admin_list_lessons");
-        rows.add(Collections.singletonList(listButton));
-
-        keyboard.setKeyboard(rows);
-
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText("🔧 Админ-меню\n\nВыберите действие:");
-        message.setReplyMarkup(keyboard);
+        message.setReplyMarkup(keyboards.adminMenu());
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Error sending admin menu", e);
-        }
+        send(chatId, message, "Error sending admin menu");
     }
 
     private void sendLessonsListForDelete(Long chatId) {
@@ -1338,25 +1264,25 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
     }
 
     private void sendDeleteConfirmation(Long chatId, Long lessonId) {
-        Optional<Lesson> lessonOpt = lessonService.getLessonById(lessonId);
+        Optional<LessonView> lessonOpt = lessonService.getLessonById(lessonId);
         if (lessonOpt.isEmpty()) {
             sendMessage(chatId, "Урок не найден.");
             return;
         }
 
-        Lesson lesson = lessonOpt.get();
+        LessonView lesson = lessonOpt.get();
 
         InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
         InlineKeyboardButton confirmButton = new InlineKeyboardButton();
         confirmButton.setText("✅ Да, удалить");
-        confirmButton.setCallbackData("confirm_delete:" + lessonId);
+        confirmButton.setCallbackData(callbackCodec.encode(CallbackAction.CONFIRM_DELETE, lessonId));
         rows.add(Collections.singletonList(confirmButton));
 
         InlineKeyboardButton cancelButton = new InlineKeyboardButton();
         cancelButton.setText("❌ Отмена");
-        cancelButton.setCallbackData("cancel_delete:" + lessonId);
+        cancelButton.setCallbackData(callbackCodec.encode(CallbackAction.CANCEL_DELETE, lessonId));
         rows.add(Collections.singletonList(cancelButton));
 
         keyboard.setKeyboard(rows);
@@ -1365,16 +1291,12 @@ public class TelegramBotHandler extends TelegramLongPollingBot {
         message.setChatId(chatId.toString());
         message.setText("⚠️ ВНИМАНИЕ!\n\n" +
                 "Вы собираетесь удалить урок:\n" +
-                "📝 " + lesson.getTitle() + "\n\n" +
+                "📝 " + lesson.title() + "\n\n" +
                 "Это действие нельзя отменить!\n\n" +
                 "Вы уверены?");
         message.setReplyMarkup(keyboard);
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Error sending delete confirmation", e);
-        }
+        send(chatId, message, "Error sending delete confirmation");
     }
 }
 
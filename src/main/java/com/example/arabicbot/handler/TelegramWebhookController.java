@@ -0,0 +1,53 @@
+package com.example.arabicbot.handler;
+
+import com.example.arabicbot.config.BotConfig;
+import com.example.arabicbot.config.WebhookModeCondition;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+// Прием обновлений в webhook-режиме. Обработка общая с long polling: обновление ставится
+// в очередь UpdateDispatcher, а Telegram сразу получает 200.
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@Conditional(WebhookModeCondition.class)
+public class TelegramWebhookController {
+
+    private static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final BotConfig botConfig;
+    private final TelegramBotHandler botHandler;
+
+    @PostMapping("${telegram.bot.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> onUpdate(@RequestHeader(value = SECRET_TOKEN_HEADER, required = false) String secretToken,
+                                         @RequestBody Update update) {
+        if (!isValidSecretToken(secretToken)) {
+            log.warn("Rejected webhook update {} with invalid secret token", update.getUpdateId());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!botHandler.enqueueUpdate(update)) {
+            // Очередь переполнена — Telegram повторит доставку позже
+            log.warn("Update queue is full, asking Telegram to redeliver update {}", update.getUpdateId());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    private boolean isValidSecretToken(String secretToken) {
+        // Пустой секрет в webhook-режиме не пропускает BotConfiguration, поэтому заголовок сверяется всегда
+        String expected = botConfig.getWebhookSecretToken();
+        return expected != null && !expected.isBlank() && secretToken != null && MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8), secretToken.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.arabicbot.handler;
+
+import com.example.arabicbot.config.BotConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Раздает обновления по пулу воркеров, сохраняя строгий порядок внутри одного ключа (пользователя):
+// у каждого ключа своя очередь, которую в каждый момент обрабатывает не больше одного воркера.
+@Slf4j
+@Component
+public class UpdateDispatcher {
+
+    // Сколько задач одного ключа обрабатываем подряд, прежде чем уступить воркер другим ключам
+    private static final int DRAIN_BATCH = 16;
+
+    private final Map<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final Semaphore capacity;
+    private final int parallelism;
+    private final int queueCapacity;
+
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+    private final LongAdder processedTasks = new LongAdder();
+    private final LongAdder rejectedTasks = new LongAdder();
+    private final LongAdder failedTasks = new LongAdder();
+
+    public UpdateDispatcher(BotConfig botConfig) {
+        this.parallelism = Math.max(1, botConfig.getDispatcherParallelism());
+        this.queueCapacity = Math.max(1, botConfig.getDispatcherQueueCapacity());
+        this.capacity = new Semaphore(queueCapacity);
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "update-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Если очередь переполнена, ждем освобождения места — long polling получает обратное давление
+    // вместо потери обновлений. false — диспетчер уже остановлен.
+    public boolean dispatch(Long key, Runnable task) throws InterruptedException {
+        capacity.acquire();
+        return enqueue(key, task);
+    }
+
+    // Неблокирующий вариант: возвращает false, если очередь переполнена или диспетчер остановлен
+    public boolean tryDispatch(Long key, Runnable task) {
+        if (!capacity.tryAcquire()) {
+            rejectedTasks.increment();
+            return false;
+        }
+        return enqueue(key, task);
+    }
+
+    // Продолжение уже принятого обновления (отложенное действие по таймеру): ставится в очередь ключа
+    // без разрешения из capacity, иначе при заполненной очереди пользователь терял бы следующий шаг.
+    // Таких задач не больше одной на запланированное действие, поэтому очередь они не раздувают.
+    public boolean dispatchFollowUp(Long key, Runnable task) {
+        return enqueue(key, new FollowUp(task));
+    }
+
+    private boolean enqueue(Long key, Runnable task) {
+        queuedTasks.incrementAndGet();
+        boolean[] startDrain = new boolean[1];
+        mailboxes.compute(key, (k, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox();
+            }
+            mailbox.tasks.add(task);
+            if (!mailbox.running) {
+                mailbox.running = true;
+                startDrain[0] = true;
+            }
+            return mailbox;
+        });
+        if (startDrain[0]) {
+            try {
+                workers.execute(() -> drain(key));
+            } catch (RejectedExecutionException e) {
+                log.warn("Update dispatcher is shut down, rejecting updates for key {}", key);
+                discard(key);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void drain(Long key) {
+        for (int i = 0; i < DRAIN_BATCH; i++) {
+            Runnable task = pollOrRelease(key);
+            if (task == null) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Exception e) {
+                failedTasks.increment();
+                log.error("Error processing update for key {}", key, e);
+            } finally {
+                queuedTasks.decrementAndGet();
+                processedTasks.increment();
+                releaseCapacity(task);
+            }
+        }
+        // Ключ все еще занят — уступаем воркер и продолжаем позже, очередь остается за нами
+        try {
+            workers.execute(() -> drain(key));
+        } catch (RejectedExecutionException e) {
+            log.warn("Update dispatcher is shut down, dropping remaining updates for key {}", key);
+            discard(key);
+        }
+    }
+
+    // Очередь ключа, которую уже некому обработать: удаляем ее целиком и возвращаем разрешения
+    private void discard(Long key) {
+        Mailbox mailbox = mailboxes.remove(key);
+        if (mailbox == null) {
+            return;
+        }
+        // После удаления из map очередь больше никто не видит, поэтому читаем ее без compute
+        for (Runnable task : mailbox.tasks) {
+            queuedTasks.decrementAndGet();
+            rejectedTasks.increment();
+            releaseCapacity(task);
+        }
+    }
+
+    private void releaseCapacity(Runnable task) {
+        if (!(task instanceof FollowUp)) {
+            capacity.release();
+        }
+    }
+
+    private Runnable pollOrRelease(Long key) {
+        Runnable[] next = new Runnable[1];
+        mailboxes.computeIfPresent(key, (k, mailbox) -> {
+            next[0] = mailbox.tasks.poll();
+            // Пустую очередь удаляем, следующий dispatch создаст новую и запустит обработку
+            return next[0] == null ? null : mailbox;
+        });
+        return next[0];
+    }
+
+    public int getQueuedTasks() {
+        return queuedTasks.get();
+    }
+
+    public int getActiveMailboxes() {
+        return mailboxes.size();
+    }
+
+    public long getProcessedTasks() {
+        return processedTasks.sum();
+    }
+
+    public long getRejectedTasks() {
+        return rejectedTasks.sum();
+    }
+
+    public long getFailedTasks() {
+        return failedTasks.sum();
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Update dispatcher did not drain in time, {} tasks left", queuedTasks.get());
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Задача без разрешения из capacity (см. dispatchFollowUp)
+    private record FollowUp(Runnable task) implements Runnable {
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    // Доступ к полям только внутри compute/computeIfPresent по ключу
+    private static final class Mailbox {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
+    }
+}
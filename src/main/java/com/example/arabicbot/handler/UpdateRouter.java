@@ -0,0 +1,158 @@
+package com.example.arabicbot.handler;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Таблица маршрутов: команды и подписи кнопок клавиатуры ищутся по точному тексту в хеш-таблице,
+// inline-кнопки — по тегу действия (CallbackAction). Поиск O(1) независимо от числа маршрутов.
+// Маршруты регистрируются при старте и дальше только читаются, поэтому таблицы без синхронизации.
+// Время каждого маршрута пишется в таймер bot.route (теги route, outcome) с гистограммой для перцентилей.
+@Slf4j
+@Component
+public class UpdateRouter {
+
+    @FunctionalInterface
+    public interface CommandHandler {
+        void handle(Long chatId, Long userId);
+    }
+
+    @FunctionalInterface
+    public interface CallbackHandler {
+        void handle(Long chatId, Long userId, Integer messageId, DecodedCallback callback);
+    }
+
+    public record RouteStats(String route, long count, long errors, double averageMs, double maxMs) {
+    }
+
+    private final Map<String, CommandRoute> commands = new HashMap<>();
+    private final Map<CallbackAction, CallbackRoute> callbacks = new EnumMap<>(CallbackAction.class);
+    private final List<RouteMetrics> routes = new ArrayList<>();
+    private final MeterRegistry meterRegistry;
+
+    public UpdateRouter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Один маршрут может отвечать на несколько текстов: команду и подпись кнопки клавиатуры
+    public void command(String route, CommandHandler handler, String... texts) {
+        CommandRoute commandRoute = new CommandRoute(register("command:" + route), handler);
+        for (String text : texts) {
+            if (commands.putIfAbsent(text, commandRoute) != null) {
+                throw new IllegalStateException("Command text is already routed: " + text);
+            }
+        }
+    }
+
+    public void callback(CallbackAction action, CallbackHandler handler) {
+        CallbackRoute callbackRoute = new CallbackRoute(register("callback:" + action.name().toLowerCase()), handler);
+        if (callbacks.putIfAbsent(action, callbackRoute) != null) {
+            throw new IllegalStateException("Callback action is already routed: " + action);
+        }
+    }
+
+    // Предупреждает о действиях, для которых кнопки создаются, но обработчика нет
+    public void verifyCallbacks() {
+        for (CallbackAction action : CallbackAction.values()) {
+            if (!callbacks.containsKey(action)) {
+                log.warn("No route registered for callback action {}", action);
+            }
+        }
+    }
+
+    // false — для текста нет маршрута
+    public boolean routeCommand(String text, Long chatId, Long userId) {
+        CommandRoute route = commands.get(text);
+        if (route == null) {
+            return false;
+        }
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            route.handler.handle(chatId, userId);
+            failed = false;
+        } finally {
+            route.metrics.record(System.nanoTime() - started, failed);
+        }
+        return true;
+    }
+
+    public boolean routeCallback(DecodedCallback callback, Long chatId, Long userId, Integer messageId) {
+        CallbackRoute route = callbacks.get(callback.getAction());
+        if (route == null) {
+            return false;
+        }
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            route.handler.handle(chatId, userId, messageId, callback);
+            failed = false;
+        } finally {
+            route.metrics.record(System.nanoTime() - started, failed);
+        }
+        return true;
+    }
+
+    // Маршруты в порядке регистрации; горячие маршруты видны по count
+    public List<RouteStats> getRouteStats() {
+        List<RouteStats> stats = new ArrayList<>(routes.size());
+        for (RouteMetrics metrics : routes) {
+            stats.add(metrics.snapshot());
+        }
+        return stats;
+    }
+
+    private RouteMetrics register(String route) {
+        RouteMetrics metrics = new RouteMetrics(route, routeTimer(route, "ok"), routeTimer(route, "error"));
+        routes.add(metrics);
+        return metrics;
+    }
+
+    private Timer routeTimer(String route, String outcome) {
+        return Timer.builder("bot.route")
+                .description("Update handling time per route")
+                .tag("route", route)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private record CommandRoute(RouteMetrics metrics, CommandHandler handler) {
+    }
+
+    private record CallbackRoute(RouteMetrics metrics, CallbackHandler handler) {
+    }
+
+    private static final class RouteMetrics {
+        private final String route;
+        private final Timer succeeded;
+        private final Timer failed;
+
+        private RouteMetrics(String route, Timer succeeded, Timer failed) {
+            this.route = route;
+            this.succeeded = succeeded;
+            this.failed = failed;
+        }
+
+        private void record(long elapsedNanos, boolean failed) {
+            (failed ? this.failed : succeeded).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        // max — максимум за последнее окно таймера, а не за все время работы
+        private RouteStats snapshot() {
+            long errors = failed.count();
+            long calls = succeeded.count() + errors;
+            double totalMs = succeeded.totalTime(TimeUnit.MILLISECONDS) + failed.totalTime(TimeUnit.MILLISECONDS);
+            double maxMs = Math.max(succeeded.max(TimeUnit.MILLISECONDS), failed.max(TimeUnit.MILLISECONDS));
+            return new RouteStats(route, calls, errors, calls == 0 ? 0 : totalMs / calls, maxMs);
+        }
+    }
+}
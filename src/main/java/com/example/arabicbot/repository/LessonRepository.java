@@ -1,13 +1,48 @@
 package com.example.arabicbot.repository;
 
+import com.example.arabicbot.dto.CatalogExportRow;
+import com.example.arabicbot.dto.LessonView;
 import com.example.arabicbot.entity.Lesson;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface LessonRepository extends JpaRepository<Lesson, Long> {
-    List<Lesson> findAllByOrderByIdAsc();
-}
+    // Каталог уроков для чтения: только нужные колонки, без сущностей и их коллекций.
+    // Результат лежит в кэше запросов до первого изменения таблицы lessons.
+    @Query("select new com.example.arabicbot.dto.LessonView(l.id, l.title, l.description, l.videoFileId) " +
+           "from Lesson l order by l.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<LessonView> findAllViews();
+
+    // Правки админа — один UPDATE без чтения сущности; возвращают число измененных строк
+    @Modifying
+    @Query("update Lesson l set l.title = :title where l.id = :lessonId")
+    int updateTitle(@Param("lessonId") Long lessonId, @Param("title") String title);
+
+    @Modifying
+    @Query("update Lesson l set l.description = :description where l.id = :lessonId")
+    int updateDescription(@Param("lessonId") Long lessonId, @Param("description") String description);
 
+    @Modifying
+    @Query("update Lesson l set l.videoFileId = :videoFileId where l.id = :lessonId")
+    int updateVideoFileId(@Param("lessonId") Long lessonId, @Param("videoFileId") String videoFileId);
+
+    // Весь каталог плоскими строками для выгрузки. Читается курсором порциями по fetch size,
+    // строки — DTO, а не управляемые сущности. Вызывать внутри транзакции и закрывать поток.
+    @Query("select new com.example.arabicbot.dto.CatalogExportRow(l.id, l.title, l.description, l.videoFileId, " +
+           "q.id, q.question, a.id, a.text, a.isCorrect) " +
+           "from Lesson l left join l.questions q left join q.answers a " +
+           "order by l.id, q.id, a.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<CatalogExportRow> streamCatalogRows();
+}
@@ -1,13 +1,42 @@
 package com.example.arabicbot.repository;
 
+import com.example.arabicbot.dto.AnswerView;
 import com.example.arabicbot.entity.TestAnswer;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
 public interface TestAnswerRepository extends JpaRepository<TestAnswer, Long> {
-    List<TestAnswer> findByQuestionIdOrderByIdAsc(Long questionId);
-}
+    // Ответы вопроса в порядке id — в этом же порядке их нумерует админ при выборе правильного
+    @Query("select new com.example.arabicbot.dto.AnswerView(a.id, a.text, a.isCorrect) " +
+           "from TestAnswer a where a.question.id = :questionId order by a.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<AnswerView> findViewsByQuestionId(@Param("questionId") Long questionId);
+
+    // Меняет текст, только если ответ относится к уроку lessonId
+    @Modifying
+    @Query("update TestAnswer a set a.text = :text where a.id = :answerId " +
+           "and a.question.id in (select q.id from TestQuestion q where q.lesson.id = :lessonId)")
+    int updateText(@Param("lessonId") Long lessonId, @Param("answerId") Long answerId, @Param("text") String text);
 
+    // Одним UPDATE делает правильным ответ с порядковым номером offset (0-based, по id) и сбрасывает флаг
+    // у остальных. 0 строк — вопроса нет в уроке lessonId или ответов меньше, чем offset + 1.
+    // Затронутые таблицы указаны явно: иначе нативный UPDATE сбросил бы все регионы кэша второго уровня.
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "test_answers"))
+    @Query(value = "UPDATE test_answers SET is_correct = (id = " +
+                   "(SELECT a.id FROM test_answers a WHERE a.question_id = :questionId ORDER BY a.id LIMIT 1 OFFSET :offset)) " +
+                   "WHERE question_id = :questionId " +
+                   "AND EXISTS (SELECT 1 FROM test_questions q WHERE q.id = :questionId AND q.lesson_id = :lessonId) " +
+                   "AND EXISTS (SELECT 1 FROM test_answers a WHERE a.question_id = :questionId OFFSET :offset)",
+           nativeQuery = true)
+    int markCorrect(@Param("lessonId") Long lessonId, @Param("questionId") Long questionId, @Param("offset") int offset);
+}
@@ -1,13 +1,35 @@
 package com.example.arabicbot.repository;
 
+import com.example.arabicbot.dto.QuestionView;
 import com.example.arabicbot.entity.TestQuestion;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface TestQuestionRepository extends JpaRepository<TestQuestion, Long> {
-    List<TestQuestion> findByLessonIdOrderByIdAsc(Long lessonId);
-}
+    // Вопросы урока для экранов редактирования, без ответов и без сущностей (из кэша запросов)
+    @Query("select new com.example.arabicbot.dto.QuestionView(q.id, q.question) " +
+           "from TestQuestion q where q.lesson.id = :lessonId order by q.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<QuestionView> findViewsByLessonId(@Param("lessonId") Long lessonId);
+
+    @Query("select new com.example.arabicbot.dto.QuestionView(q.id, q.question) from TestQuestion q where q.id = :questionId")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Optional<QuestionView> findViewById(@Param("questionId") Long questionId);
 
+    // Урок вопроса — для кнопок, которые несут только questionId
+    @Query("select q.lesson.id from TestQuestion q where q.id = :questionId")
+    Optional<Long> findLessonIdById(@Param("questionId") Long questionId);
+
+    // Вопросы урока вместе с ответами одним запросом (ответы упорядочены по id через @OrderBy)
+    @Query("select q from TestQuestion q left join fetch q.answers where q.lesson.id = :lessonId order by q.id")
+    List<TestQuestion> findWithAnswersByLessonId(@Param("lessonId") Long lessonId);
+}
@@ -1,13 +1,24 @@
 package com.example.arabicbot.repository;
 
+import com.example.arabicbot.dto.UserProgressRow;
 import com.example.arabicbot.entity.UserProgress;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserProgressRepository extends JpaRepository<UserProgress, Long> {
     Optional<UserProgress> findByUserId(Long userId);
-}
 
+    // Выгрузка прогресса курсором, без загрузки сущностей. Вызывать внутри транзакции и закрывать поток.
+    @Query("select new com.example.arabicbot.dto.UserProgressRow(p.userId, p.currentLessonId, p.lastAnsweredQuestionId) " +
+           "from UserProgress p order by p.userId")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<UserProgressRow> streamAll();
+}
@@ -0,0 +1,9 @@
+package com.example.arabicbot.repository;
+
+import com.example.arabicbot.entity.UserStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserStatsRepository extends JpaRepository<UserStats, Long> {
+}
@@ -0,0 +1,102 @@
+package com.example.arabicbot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.function.Function;
+
+// Строки пользователей (одна на userId) в памяти с отложенной записью. Чтение — из ограниченного кэша,
+// затем из незаписанных изменений и только потом из БД; при переполнении кэша вытесняются отдельные
+// редко используемые записи. Запись кладет новое значение в кэш и в WriteBehindBuffer, который
+// сбрасывает накопленное одним batch upsert (метрика bot.db.batch с тегом table).
+// Значения не изменяются после записи: каждое изменение создает новый объект.
+@Slf4j
+final class CachedWriteBehindStore<V> implements AutoCloseable {
+
+    private final String table;
+    private final JdbcTemplate jdbcTemplate;
+    private final String upsertSql;
+    private final ParameterizedPreparedStatementSetter<V> rowSetter;
+    private final Cache<Long, V> cache;
+    private final WriteBehindBuffer<Long, V> writes;
+    private final Timer batchTimer;
+
+    CachedWriteBehindStore(String table, int maxCachedUsers, long flushIntervalMs, int flushBatchSize,
+                           JdbcTemplate jdbcTemplate, String upsertSql, ParameterizedPreparedStatementSetter<V> rowSetter,
+                           MeterRegistry meterRegistry) {
+        this.table = table;
+        this.jdbcTemplate = jdbcTemplate;
+        this.upsertSql = upsertSql;
+        this.rowSetter = rowSetter;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, maxCachedUsers))
+                .build();
+        this.batchTimer = Timer.builder("bot.db.batch")
+                .description("JDBC batch write time")
+                .tag("table", table)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.writes = new WriteBehindBuffer<>(table.replace('_', '-'), flushIntervalMs, flushBatchSize, this::upsertBatch);
+    }
+
+    // loader читает строку из БД; вызывается, только если значения нет ни в кэше, ни среди незаписанных
+    V get(Long userId, Function<Long, V> loader) {
+        V value = cache.getIfPresent(userId);
+        if (value != null) {
+            return value;
+        }
+        // Незаписанное значение всегда новее того, что лежит в БД
+        value = writes.getPending(userId);
+        if (value == null) {
+            value = loader.apply(userId);
+        }
+        V cached = cache.asMap().putIfAbsent(userId, value);
+        return cached != null ? cached : value;
+    }
+
+    void put(Long userId, V value) {
+        // Порядок важен: кэш обновляется раньше буфера, чтобы чтение не увидело старую строку из БД
+        cache.put(userId, value);
+        writes.put(userId, value);
+    }
+
+    // Синхронно записывает все накопленные изменения
+    void flush() {
+        writes.flush();
+    }
+
+    int getPendingWrites() {
+        return writes.getPendingCount();
+    }
+
+    int getCachedUsers() {
+        return (int) cache.estimatedSize();
+    }
+
+    @Override
+    public void close() {
+        writes.close();
+    }
+
+    private void upsertBatch(List<V> batch) {
+        batchTimer.record(() -> jdbcTemplate.batchUpdate(upsertSql, batch, batch.size(), rowSetter));
+        log.debug("Flushed {} {} rows", batch.size(), table);
+    }
+
+    static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+}
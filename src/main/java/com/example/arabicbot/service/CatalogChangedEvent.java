@@ -0,0 +1,11 @@
+package com.example.arabicbot.service;
+
+// Публикуется LessonService при любом изменении уроков; кэши перестраиваются после коммита.
+// LESSON — изменились сами уроки (состав, название, видео, описание), QUIZ — только вопросы и ответы.
+public record CatalogChangedEvent(Long lessonId, Change change) {
+
+    public enum Change {
+        LESSON,
+        QUIZ
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.dto.CatalogExportRow;
+import com.example.arabicbot.dto.UserProgressRow;
+import com.example.arabicbot.repository.LessonRepository;
+import com.example.arabicbot.repository.UserProgressRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Выгрузка каталога и прогресса в ZIP-архив:
+//   lessons.json — уроки в формате импорта (LessonImportService), его можно загрузить обратно;
+//   user_progress.csv — user_id, current_lesson_id, last_answered_question_id.
+// Строки читаются курсором БД и сразу пишутся в архив, поэтому память не зависит от размера таблиц.
+// Выгрузка из бота идет в собственном потоке catalog-export (как импорт в lesson-import), а не в пуле
+// обработки обновлений: чтение таблиц и сжатие не занимают воркер на все время выгрузки.
+@Slf4j
+@Service
+public class CatalogExportService {
+
+    public static final String LESSONS_ENTRY = "lessons.json";
+    public static final String PROGRESS_ENTRY = "user_progress.csv";
+
+    public record ExportSummary(int lessons, int progressRows, long elapsedMs) {
+    }
+
+    // Готовый архив во временном файле; удалить его после отправки — забота вызывающего
+    public record ExportFile(Path file, ExportSummary summary) {
+    }
+
+    private final LessonRepository lessonRepository;
+    private final UserProgressRepository userProgressRepository;
+    private final UserProgressService userProgressService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    // Выгрузки редки и читают одни и те же таблицы целиком, поэтому выполняются по одной
+    private final ExecutorService executor;
+
+    public CatalogExportService(LessonRepository lessonRepository, UserProgressRepository userProgressRepository,
+                                UserProgressService userProgressService, ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.lessonRepository = lessonRepository;
+        this.userProgressRepository = userProgressRepository;
+        this.userProgressService = userProgressService;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Сбрасывает отложенный прогресс и пишет архив во временный файл в потоке выгрузки
+    public CompletableFuture<ExportFile> exportAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            Path file;
+            try {
+                file = Files.createTempFile("arabic-bot-export-", ".zip");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file))) {
+                userProgressService.flush();
+                // Курсоры БД живут только внутри транзакции; поток выгрузки открывает ее сам
+                ExportSummary summary = readOnlyTransaction.execute(status -> {
+                    try {
+                        return writeArchive(output);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                return new ExportFile(file, summary);
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(file);
+                throw e instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) e;
+            }
+        }, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private ExportSummary writeArchive(OutputStream output) throws IOException {
+        long started = System.nanoTime();
+        ZipOutputStream zip = new ZipOutputStream(output, StandardCharsets.UTF_8);
+
+        zip.putNextEntry(new ZipEntry(LESSONS_ENTRY));
+        int lessons;
+        try (Stream<CatalogExportRow> rows = lessonRepository.streamCatalogRows()) {
+            lessons = writeLessons(rows.iterator(), zip);
+        }
+        zip.closeEntry();
+
+        zip.putNextEntry(new ZipEntry(PROGRESS_ENTRY));
+        int progressRows;
+        try (Stream<UserProgressRow> rows = userProgressRepository.streamAll()) {
+            progressRows = writeProgress(rows.iterator(), zip);
+        }
+        zip.closeEntry();
+        zip.finish();
+
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        log.info("Exported {} lessons and {} progress rows in {} ms", lessons, progressRows, elapsedMs);
+        return new ExportSummary(lessons, progressRows, elapsedMs);
+    }
+
+    // Строки отсортированы по (урок, вопрос, ответ), поэтому урок собирается на лету и сразу пишется
+    private int writeLessons(Iterator<CatalogExportRow> rows, OutputStream output) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(output);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.useDefaultPrettyPrinter();
+        json.writeStartArray();
+
+        int lessons = 0;
+        Long lessonId = null;
+        Long questionId = null;
+        int answerIndex = 0;
+        Integer correctIndex = null;
+        while (rows.hasNext()) {
+            CatalogExportRow row = rows.next();
+            if (!row.lessonId().equals(lessonId)) {
+                if (questionId != null) {
+                    endQuestion(json, correctIndex);
+                }
+                if (lessonId != null) {
+                    endLesson(json);
+                }
+                lessonId = row.lessonId();
+                questionId = null;
+                lessons++;
+                json.writeStartObject();
+                json.writeStringField("title", row.title());
+                json.writeStringField("description", row.description());
+                json.writeStringField("videoFileId", row.videoFileId());
+                json.writeArrayFieldStart("questions");
+            }
+            if (row.questionId() == null) {
+                continue;
+            }
+            if (!row.questionId().equals(questionId)) {
+                if (questionId != null) {
+                    endQuestion(json, correctIndex);
+                }
+                questionId = row.questionId();
+                answerIndex = 0;
+                correctIndex = null;
+                json.writeStartObject();
+                json.writeStringField("question", row.question());
+                json.writeArrayFieldStart("answers");
+            }
+            if (row.answerId() != null) {
+                answerIndex++;
+                json.writeString(row.answerText());
+                if (Boolean.TRUE.equals(row.correct())) {
+                    correctIndex = answerIndex;
+                }
+            }
+        }
+        if (questionId != null) {
+            endQuestion(json, correctIndex);
+        }
+        if (lessonId != null) {
+            endLesson(json);
+        }
+        json.writeEndArray();
+        json.flush();
+        return lessons;
+    }
+
+    private static void endQuestion(JsonGenerator json, Integer correctIndex) throws IOException {
+        json.writeEndArray();
+        if (correctIndex != null) {
+            json.writeNumberField("correctAnswerIndex", correctIndex);
+        } else {
+            json.writeNullField("correctAnswerIndex");
+        }
+        json.writeEndObject();
+    }
+
+    private static void endLesson(JsonGenerator json) throws IOException {
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary file {}", file, e);
+        }
+    }
+
+    private static int writeProgress(Iterator<UserProgressRow> rows, OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        writer.write("user_id,current_lesson_id,last_answered_question_id\n");
+        int count = 0;
+        while (rows.hasNext()) {
+            UserProgressRow row = rows.next();
+            writer.write(row.userId().toString());
+            writer.write(',');
+            writer.write(Objects.toString(row.currentLessonId(), ""));
+            writer.write(',');
+            writer.write(Objects.toString(row.lastAnsweredQuestionId(), ""));
+            writer.write('\n');
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.dto.LessonView;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Неизменяемый снимок каталога уроков. Новый снимок строится целиком и подменяет старый,
+// поэтому читатели работают без блокировок и всегда видят согласованную версию.
+// Навигация по урокам идет по предрасчитанному отсортированному массиву id.
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final List<LessonView> lessons;
+    private final long[] lessonIds;
+    private final Map<Long, LessonView> lessonsById;
+
+    // lessons должны быть отсортированы по id
+    CatalogSnapshot(long version, List<LessonView> lessons) {
+        this.version = version;
+        this.lessons = List.copyOf(lessons);
+        this.lessonIds = new long[this.lessons.size()];
+        Map<Long, LessonView> byId = new HashMap<>();
+        for (int i = 0; i < this.lessons.size(); i++) {
+            LessonView lesson = this.lessons.get(i);
+            lessonIds[i] = lesson.id();
+            byId.put(lesson.id(), lesson);
+        }
+        this.lessonsById = Map.copyOf(byId);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // Уроки в порядке возрастания id
+    public List<LessonView> getLessons() {
+        return lessons;
+    }
+
+    public Optional<LessonView> findLesson(Long lessonId) {
+        return Optional.ofNullable(lessonsById.get(lessonId));
+    }
+
+    public int size() {
+        return lessons.size();
+    }
+
+    // O(log n): если текущий урок уже удален, следующим считается ближайший урок с большим id
+    public Optional<LessonView> nextLesson(Long currentLessonId) {
+        int index = Arrays.binarySearch(lessonIds, currentLessonId);
+        int nextIndex = index >= 0 ? index + 1 : -index - 1;
+        return nextIndex < lessons.size() ? Optional.of(lessons.get(nextIndex)) : Optional.empty();
+    }
+
+}
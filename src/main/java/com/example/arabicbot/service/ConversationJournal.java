@@ -0,0 +1,421 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.config.BotConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+// Журнал незавершенных сценариев в отображенном в память файле. Каждое изменение сессии дописывается
+// снимком ее состояния (несколько сотен байт), завершение сессии — коротким надгробием. Запись — это
+// копирование в страничный кэш без fsync: данные переживают перезапуск процесса, а на диск
+// фоновый поток сбрасывает их раз в sync-interval-ms. Сжатие и force() выполняет только этот поток:
+// если журнал заполнен, запись пропускается, а снимок остается в памяти и попадет в сжатый журнал.
+// При старте журнал читается до первой поврежденной или пустой записи, после чего переписывается
+// заново только с живыми сессиями.
+//
+// Формат: заголовок MAGIC, затем записи [длина int][crc32 int][тип byte][userId long][время long][тело].
+// Длина пишется последней, поэтому оборванная запись выглядит как конец журнала.
+@Slf4j
+@Service
+public class ConversationJournal {
+
+    private static final int MAGIC = 0x434A5331; // "CJS1"
+    private static final int HEADER_SIZE = 4;
+    private static final int RECORD_HEADER_SIZE = 8;
+    // Смещение тела снимка: тип + userId + время
+    private static final int STATE_OFFSET = 1 + 8 + 8;
+    private static final byte SNAPSHOT = 1;
+    private static final byte REMOVE = 2;
+
+    public record RecoveredSession(Long userId, ConversationSession.Flow flow, Object state, long savedAtMillis) {
+    }
+
+    // Последний снимок сессии и сессия, которая его записала (null для восстановленных при старте)
+    private record LiveRecord(ConversationSession owner, byte[] bytes) {
+    }
+
+    private final Path path;
+    private final int capacity;
+    private final ScheduledExecutorService syncer;
+    // Последний снимок каждой живой сессии — из них собирается сжатый журнал. Под this.
+    private final Map<Long, LiveRecord> live = new HashMap<>();
+    private MappedByteBuffer buffer;
+    private int position;
+    private int liveBytes;
+    // Запись не поместилась: журнал сожмет поток обслуживания. Под this.
+    private boolean compactionRequested;
+
+    private final LongAdder appendedRecords = new LongAdder();
+    private final LongAdder skippedRecords = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    public ConversationJournal(BotConfig botConfig) {
+        this.path = Paths.get(botConfig.getSessionJournalPath());
+        this.capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(1, botConfig.getSessionJournalSizeMb()) * 1024L * 1024L);
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100, botConfig.getSessionJournalSyncIntervalMs());
+        syncer.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Читает журнал и возвращает сессии, которые были активны на момент остановки. Сразу за этим
+    // поток обслуживания сжимает журнал, чтобы дальше дописывать в чистый файл; до этого новые
+    // записи только копятся в live.
+    public synchronized List<RecoveredSession> recover() {
+        long started = System.nanoTime();
+        live.clear();
+        if (Files.exists(path)) {
+            try {
+                replay(ByteBuffer.wrap(Files.readAllBytes(path)));
+            } catch (IOException e) {
+                log.error("Failed to read session journal {}, starting with no sessions", path, e);
+                live.clear();
+            }
+        }
+        List<RecoveredSession> sessions = new ArrayList<>(live.size());
+        for (Iterator<Map.Entry<Long, LiveRecord>> it = live.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, LiveRecord> entry = it.next();
+            try {
+                sessions.add(decode(entry.getKey(), entry.getValue().bytes()));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Dropping unreadable journaled session of user {}", entry.getKey(), e);
+                it.remove();
+            }
+        }
+        compactionRequested = true;
+        syncer.execute(this::maintain);
+        log.info("Recovered {} conversation sessions from {} in {} ms", sessions.size(), path,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return sessions;
+    }
+
+    // Дописывает снимок сессии, если ее состояние изменилось с прошлой записи. Снимок кодируется
+    // до захвата блокировки; завершенная к этому моменту сессия в журнал уже не попадает.
+    public void write(ConversationSession session, long nowMillis) {
+        byte[] record;
+        try {
+            record = encode(session, nowMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (this) {
+            if (!session.isActive()) {
+                return;
+            }
+            LiveRecord previous = live.get(session.getUserId());
+            byte[] previousBytes = previous != null ? previous.bytes() : null;
+            if (previousBytes != null && Arrays.equals(previousBytes, STATE_OFFSET, previousBytes.length,
+                    record, STATE_OFFSET, record.length)) {
+                return;
+            }
+            append(record);
+            liveBytes += record.length - (previousBytes != null ? previousBytes.length : 0);
+            live.put(session.getUserId(), new LiveRecord(session, record));
+        }
+    }
+
+    // Надгробие для завершенной сессии. Снимок новой активной сессии того же пользователя не трогаем:
+    // удаление могло прийти из другого потока уже после ее первой записи.
+    public synchronized void remove(ConversationSession session) {
+        LiveRecord previous = live.get(session.getUserId());
+        if (previous == null || (previous.owner() != session && previous.owner() != null
+                && previous.owner().isActive())) {
+            return;
+        }
+        remove(session.getUserId());
+    }
+
+    // Надгробие по id пользователя — для сессий, восстановленных при старте
+    public synchronized void remove(Long userId) {
+        LiveRecord previous = live.remove(userId);
+        if (previous == null) {
+            return;
+        }
+        liveBytes -= previous.bytes().length;
+        ByteBuffer tombstone = ByteBuffer.allocate(STATE_OFFSET)
+                .put(REMOVE).putLong(userId).putLong(System.currentTimeMillis());
+        append(tombstone.array());
+    }
+
+    public synchronized int getJournalBytes() {
+        return position;
+    }
+
+    public synchronized int getLiveBytes() {
+        return liveBytes;
+    }
+
+    public long getAppendedRecords() {
+        return appendedRecords.sum();
+    }
+
+    public long getSkippedRecords() {
+        return skippedRecords.sum();
+    }
+
+    public long getCompactions() {
+        return compactions.sum();
+    }
+
+    // Последний сброс на диск выполняет тот же поток обслуживания
+    @PreDestroy
+    public void shutdown() {
+        if (syncer.isShutdown()) {
+            return;
+        }
+        syncer.execute(this::syncQuietly);
+        syncer.shutdown();
+        try {
+            if (!syncer.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Session journal {} was not synced before shutdown", path);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Запись, не поместившаяся в файл, пропускается: живые снимки остаются в live и будут записаны
+    // при сжатии, которое выполнит поток обслуживания
+    private boolean append(byte[] record) {
+        int required = RECORD_HEADER_SIZE + record.length;
+        if (buffer == null || position + required > capacity) {
+            skippedRecords.increment();
+            if (!compactionRequested) {
+                compactionRequested = true;
+                // Обычно файл забит старыми снимками; предупреждаем, только если в нем тесно живым сессиям
+                if (liveBytes > capacity / 2) {
+                    log.warn("Session journal {} is full ({} bytes of live sessions), compacting in background",
+                            path, liveBytes);
+                }
+                syncer.execute(this::maintain);
+            }
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.put(position + RECORD_HEADER_SIZE, record);
+        buffer.putInt(position, record.length);
+        position += required;
+        appendedRecords.increment();
+        return true;
+    }
+
+    private void replay(ByteBuffer data) {
+        if (data.remaining() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            log.warn("Session journal {} has no valid header, ignoring it", path);
+            return;
+        }
+        int offset = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (offset + RECORD_HEADER_SIZE <= data.limit()) {
+            int length = data.getInt(offset);
+            if (length < STATE_OFFSET || offset + RECORD_HEADER_SIZE + length > data.limit()) {
+                break; // конец журнала или оборванная запись
+            }
+            byte[] record = new byte[length];
+            data.get(offset + RECORD_HEADER_SIZE, record);
+            crc.reset();
+            crc.update(record);
+            if ((int) crc.getValue() != data.getInt(offset + 4)) {
+                log.warn("Session journal {} has a corrupt record at offset {}, ignoring the rest", path, offset);
+                break;
+            }
+            long userId = ByteBuffer.wrap(record, 1, 8).getLong();
+            if (record[0] == SNAPSHOT) {
+                live.put(userId, new LiveRecord(null, record));
+            } else {
+                live.remove(userId);
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+    }
+
+    // Новый журнал пишется во временный файл и атомарно подменяет старый
+    private void compact() {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.deleteIfExists(tmp);
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer fresh = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                fresh.putInt(0, MAGIC);
+                buffer = fresh;
+                position = HEADER_SIZE;
+                liveBytes = 0;
+                compactionRequested = false;
+                for (Iterator<LiveRecord> it = live.values().iterator(); it.hasNext(); ) {
+                    byte[] record = it.next().bytes();
+                    if (position + RECORD_HEADER_SIZE + record.length > capacity) {
+                        it.remove();
+                        skippedRecords.increment();
+                        continue;
+                    }
+                    append(record);
+                    liveBytes += record.length;
+                }
+                fresh.force();
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            compactions.increment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact session journal " + path, e);
+        }
+    }
+
+    private boolean compactQuietly() {
+        try {
+            compact();
+            return true;
+        } catch (UncheckedIOException e) {
+            log.error("Session journal compaction failed", e);
+            return false;
+        }
+    }
+
+    // Фоновое обслуживание: сжатие, когда журнал заполнен или мусора в нем заметно больше живых
+    // снимков, и сброс на диск. Выполняется только в потоке session-journal-sync.
+    private void maintain() {
+        synchronized (this) {
+            int garbage = position - HEADER_SIZE - liveBytes;
+            if (compactionRequested || (buffer != null && garbage > capacity / 4 && garbage > 2 * liveBytes)) {
+                compactQuietly();
+            }
+        }
+        syncQuietly();
+    }
+
+    private void syncQuietly() {
+        MappedByteBuffer current;
+        synchronized (this) {
+            current = buffer;
+        }
+        if (current == null) {
+            return;
+        }
+        try {
+            current.force();
+        } catch (RuntimeException e) {
+            log.warn("Failed to sync session journal {}", path, e);
+        }
+    }
+
+    private static byte[] encode(ConversationSession session, long nowMillis) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(SNAPSHOT);
+        out.writeLong(session.getUserId());
+        out.writeLong(nowMillis);
+        out.writeByte(session.getFlow().ordinal());
+        if (session.getFlow() == ConversationSession.Flow.LESSON_CREATION) {
+            LessonCreationState state = session.getCreationState();
+            writeString(out, state.getTitle());
+            writeString(out, state.getDescription());
+            writeString(out, state.getVideoFileId());
+            out.writeInt(state.getCurrentQuestionIndex());
+            out.writeInt(state.getQuestions().size());
+            for (QuestionData question : state.getQuestions()) {
+                writeString(out, question.getQuestion());
+                out.writeInt(question.getAnswers().size());
+                for (String answer : question.getAnswers()) {
+                    writeString(out, answer);
+                }
+                out.writeInt(question.getCorrectAnswerIndex() != null ? question.getCorrectAnswerIndex() : -1);
+            }
+        } else if (session.getFlow() == ConversationSession.Flow.LESSON_EDIT) {
+            LessonEditState state = session.getEditState();
+            out.writeLong(state.getLessonId() != null ? state.getLessonId() : -1);
+            writeString(out, state.getCurrentStep() != null ? state.getCurrentStep().name() : null);
+            writeString(out, state.getSelectedAction() != null ? state.getSelectedAction().name() : null);
+            out.writeLong(state.getSelectedQuestionId() != null ? state.getSelectedQuestionId() : -1);
+            out.writeInt(state.getCurrentAnswerIndex());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static RecoveredSession decode(Long userId, byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, 9, record.length - 9));
+        long savedAt = in.readLong();
+        ConversationSession.Flow flow = ConversationSession.Flow.values()[in.readUnsignedByte()];
+        if (flow == ConversationSession.Flow.LESSON_CREATION) {
+            LessonCreationState state = new LessonCreationState();
+            state.setTitle(readString(in));
+            state.setDescription(readString(in));
+            state.setVideoFileId(readString(in));
+            state.setCurrentQuestionIndex(in.readInt());
+            int questionCount = in.readInt();
+            for (int i = 0; i < questionCount; i++) {
+                QuestionData question = new QuestionData();
+                question.setQuestion(readString(in));
+                int answerCount = in.readInt();
+                for (int j = 0; j < answerCount; j++) {
+                    question.addAnswer(readString(in));
+                }
+                int correct = in.readInt();
+                question.setCorrectAnswerIndex(correct >= 0 ? correct : null);
+                state.getQuestions().add(question);
+            }
+            return new RecoveredSession(userId, flow, state, savedAt);
+        }
+        if (flow == ConversationSession.Flow.LESSON_IMPORT) {
+            // Имя файла не журналируется: прерванный перезапуском импорт снова ждет документ
+            return new RecoveredSession(userId, flow, new LessonImportState(), savedAt);
+        }
+        LessonEditState state = new LessonEditState();
+        long lessonId = in.readLong();
+        state.setLessonId(lessonId >= 0 ? lessonId : null);
+        String step = readString(in);
+        state.setCurrentStep(step != null ? LessonEditState.EditStep.valueOf(step) : null);
+        String action = readString(in);
+        state.setSelectedAction(action != null ? LessonEditState.EditAction.valueOf(action) : null);
+        long questionId = in.readLong();
+        state.setSelectedQuestionId(questionId >= 0 ? questionId : null);
+        state.setCurrentAnswerIndex(in.readInt());
+        return new RecoveredSession(userId, flow, state, savedAt);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
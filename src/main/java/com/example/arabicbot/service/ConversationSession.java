@@ -0,0 +1,65 @@
+package com.example.arabicbot.service;
+
+// Активный пошаговый сценарий пользователя (создание, редактирование или импорт уроков) и его состояние
+public final class ConversationSession {
+
+    public enum Flow {
+        LESSON_CREATION,
+        LESSON_EDIT,
+        LESSON_IMPORT
+    }
+
+    private final Long userId;
+    private final Flow flow;
+    private final Object state;
+    private volatile long lastAccessNanos;
+    // Меняется под блокировкой ConversationSessionStore, читается и ConversationJournal
+    private volatile boolean active = true;
+
+    ConversationSession(Long userId, Flow flow, Object state, long nowNanos) {
+        this.userId = userId;
+        this.flow = flow;
+        this.state = state;
+        this.lastAccessNanos = nowNanos;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Flow getFlow() {
+        return flow;
+    }
+
+    public LessonCreationState getCreationState() {
+        return (LessonCreationState) state;
+    }
+
+    public LessonEditState getEditState() {
+        return (LessonEditState) state;
+    }
+
+    public LessonImportState getImportState() {
+        return (LessonImportState) state;
+    }
+
+    Object getState() {
+        return state;
+    }
+
+    long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    void touch(long nowNanos) {
+        lastAccessNanos = nowNanos;
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    void deactivate() {
+        active = false;
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.config.BotConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Общее хранилище сессий пошаговых сценариев. У пользователя не больше одной активной сессии,
+// поэтому на каждое сообщение нужен один поиск. Сессия истекает после idle TTL без обращений:
+// истечение планируется на колесе таймеров DelayedActionScheduler и проверяется при срабатывании,
+// без периодического обхода. При превышении лимита вытесняется самая давно неиспользуемая сессия.
+// Состояния дублируются в ConversationJournal и восстанавливаются при старте приложения;
+// журнал вызывается только вне блокировки хранилища.
+@Slf4j
+@Service
+public class ConversationSessionStore {
+
+    private final DelayedActionScheduler delayedActionScheduler;
+    private final ConversationJournal journal;
+    private final long idleTtlNanos;
+    private final int maxEntries;
+    // Порядок доступа (LRU), все операции под this
+    private final LinkedHashMap<Long, ConversationSession> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder createdSessions = new LongAdder();
+    private final LongAdder expiredSessions = new LongAdder();
+    private final LongAdder evictedSessions = new LongAdder();
+
+    public ConversationSessionStore(DelayedActionScheduler delayedActionScheduler, ConversationJournal journal,
+                                    BotConfig botConfig) {
+        this.delayedActionScheduler = delayedActionScheduler;
+        this.journal = journal;
+        this.idleTtlNanos = TimeUnit.MINUTES.toNanos(Math.max(1, botConfig.getSessionIdleTtlMinutes()));
+        this.maxEntries = Math.max(1, botConfig.getSessionMaxEntries());
+    }
+
+    // Поднимает сессии, прерванные остановкой приложения; простой до остановки засчитывается в TTL
+    @PostConstruct
+    public void restore() {
+        List<ConversationJournal.RecoveredSession> recoveredSessions = journal.recover();
+        List<Long> stale = new ArrayList<>();
+        long nowMillis = System.currentTimeMillis();
+        long nowNanos = System.nanoTime();
+        int restored = 0;
+        synchronized (this) {
+            for (ConversationJournal.RecoveredSession recovered : recoveredSessions) {
+                long idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, nowMillis - recovered.savedAtMillis()));
+                if (idleNanos >= idleTtlNanos) {
+                    stale.add(recovered.userId());
+                    continue;
+                }
+                ConversationSession session = new ConversationSession(recovered.userId(), recovered.flow(),
+                        recovered.state(), nowNanos - idleNanos);
+                sessions.put(session.getUserId(), session);
+                scheduleExpiry(session, idleTtlNanos - idleNanos);
+                restored++;
+            }
+        }
+        stale.forEach(journal::remove);
+        if (restored > 0) {
+            log.info("Restored {} in-progress conversation sessions", restored);
+        }
+    }
+
+    // Активная сессия пользователя или null; обращение продлевает ее жизнь
+    public synchronized ConversationSession get(Long userId) {
+        ConversationSession session = sessions.get(userId);
+        if (session != null) {
+            session.touch(System.nanoTime());
+        }
+        return session;
+    }
+
+    // Состояние сессии нужного сценария или null, если активен другой сценарий или сессии нет
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getState(Long userId, ConversationSession.Flow flow) {
+        ConversationSession session = get(userId);
+        return session != null && session.getFlow() == flow ? (T) session.getState() : null;
+    }
+
+    // Возвращает состояние сценария, начиная новую сессию, если активен другой сценарий или сессии нет
+    @SuppressWarnings("unchecked")
+    public <T> T getOrCreate(Long userId, ConversationSession.Flow flow, Supplier<T> initialState) {
+        T state;
+        ConversationSession evicted;
+        synchronized (this) {
+            ConversationSession session = get(userId);
+            if (session != null && session.getFlow() == flow) {
+                return (T) session.getState();
+            }
+            state = initialState.get();
+            evicted = put(new ConversationSession(userId, flow, state, System.nanoTime()));
+        }
+        if (evicted != null) {
+            journal.remove(evicted);
+        }
+        return state;
+    }
+
+    // Завершает сессию, только если активен указанный сценарий
+    public void remove(Long userId, ConversationSession.Flow flow) {
+        ConversationSession session;
+        synchronized (this) {
+            session = sessions.get(userId);
+            if (session == null || session.getFlow() != flow) {
+                return;
+            }
+            sessions.remove(userId);
+            session.deactivate();
+        }
+        journal.remove(session);
+    }
+
+    // Записывает текущее состояние сессии в журнал. Вызывается после обработки каждого обновления
+    // пользователя в его же потоке, поэтому состояние в этот момент никто не меняет и снимок
+    // кодируется без блокировки хранилища.
+    public void checkpoint(Long userId) {
+        ConversationSession session;
+        synchronized (this) {
+            session = sessions.get(userId);
+        }
+        if (session == null) {
+            return;
+        }
+        try {
+            journal.write(session, System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.warn("Failed to journal {} session of user {}", session.getFlow(), userId, e);
+        }
+    }
+
+    public synchronized int getActiveSessions() {
+        return sessions.size();
+    }
+
+    public long getCreatedSessions() {
+        return createdSessions.sum();
+    }
+
+    public long getExpiredSessions() {
+        return expiredSessions.sum();
+    }
+
+    public long getEvictedSessions() {
+        return evictedSessions.sum();
+    }
+
+    // Возвращает вытесненную сессию: ее надгробие пишет вызывающий после выхода из блокировки
+    private ConversationSession put(ConversationSession session) {
+        ConversationSession replaced = sessions.put(session.getUserId(), session);
+        if (replaced != null) {
+            replaced.deactivate();
+        }
+        createdSessions.increment();
+        scheduleExpiry(session, idleTtlNanos);
+        if (sessions.size() <= maxEntries) {
+            return null;
+        }
+        Iterator<Map.Entry<Long, ConversationSession>> eldest = sessions.entrySet().iterator();
+        ConversationSession evicted = eldest.next().getValue();
+        eldest.remove();
+        evicted.deactivate();
+        evictedSessions.increment();
+        log.warn("Session store is full ({} entries), evicted {} session of user {}",
+                maxEntries, evicted.getFlow(), evicted.getUserId());
+        return evicted;
+    }
+
+    private void scheduleExpiry(ConversationSession session, long delayNanos) {
+        delayedActionScheduler.schedule(TimeUnit.NANOSECONDS.toMillis(delayNanos) + 1, () -> checkExpiry(session));
+    }
+
+    // Выполняется в потоке таймера. Если сессией пользовались, переносим проверку на остаток TTL.
+    private void checkExpiry(ConversationSession session) {
+        long idleNanos;
+        synchronized (this) {
+            if (!session.isActive()) {
+                return; // уже завершена, заменена или вытеснена
+            }
+            idleNanos = System.nanoTime() - session.getLastAccessNanos();
+            if (idleNanos < idleTtlNanos) {
+                scheduleExpiry(session, idleTtlNanos - idleNanos);
+                return;
+            }
+            sessions.remove(session.getUserId());
+            session.deactivate();
+        }
+        journal.remove(session);
+        expiredSessions.increment();
+        log.info("{} session of user {} expired after {} min idle",
+                session.getFlow(), session.getUserId(), TimeUnit.NANOSECONDS.toMinutes(idleNanos));
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.arabicbot.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Отложенные действия на хешированном колесе таймеров: один поток, O(1) на постановку и отмену.
+// Действия с ключом можно отменить разом (например, когда пользователь открыл другой урок).
+@Slf4j
+@Service
+public class DelayedActionScheduler {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int WHEEL_SIZE = 512; // один оборот колеса ~25 секунд
+
+    @SuppressWarnings("unchecked")
+    private final List<Timeout>[] wheel = new List[WHEEL_SIZE];
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Map<Long, Set<Timeout>> timeoutsByKey = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+    private final Thread timerThread;
+    private volatile boolean running = true;
+
+    private final AtomicInteger scheduledActions = new AtomicInteger();
+    private final LongAdder firedActions = new LongAdder();
+    private final LongAdder cancelledActions = new LongAdder();
+
+    public DelayedActionScheduler() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        timerThread = new Thread(this::runTimer, "delayed-actions");
+        timerThread.setDaemon(true);
+        timerThread.start();
+    }
+
+    // Действие выполняется прямо в потоке таймера, поэтому должно быть коротким
+    public Timeout schedule(long delayMs, Runnable action) {
+        return enqueue(new Timeout(null, deadlineFor(delayMs), action, Runnable::run));
+    }
+
+    // Действие с ключом передается в handoff (например, в очередь пользователя) и выполняется,
+    // только если до момента запуска ключ не был отменен через cancel(key). Если handoff отказал
+    // (бросил исключение, например RejectedExecutionException), действие снимается с ключа.
+    public Timeout schedule(Long key, long delayMs, Executor handoff, Runnable action) {
+        Timeout timeout = new Timeout(key, deadlineFor(delayMs), action, handoff);
+        timeoutsByKey.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(timeout);
+        return enqueue(timeout);
+    }
+
+    public void cancel(Long key) {
+        Set<Timeout> timeouts = timeoutsByKey.remove(key);
+        if (timeouts != null) {
+            for (Timeout timeout : timeouts) {
+                timeout.cancel();
+            }
+        }
+    }
+
+    public int getScheduledActions() {
+        return scheduledActions.get();
+    }
+
+    public long getFiredActions() {
+        return firedActions.sum();
+    }
+
+    public long getCancelledActions() {
+        return cancelledActions.sum();
+    }
+
+    private long deadlineFor(long delayMs) {
+        return System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+    }
+
+    private Timeout enqueue(Timeout timeout) {
+        scheduledActions.incrementAndGet();
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    private void runTimer() {
+        long tick = 0;
+        while (running) {
+            long sleepNanos = TICK_NANOS * (tick + 1) - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+            }
+            transferPending(tick);
+            expireBucket(wheel[(int) (tick & (WHEEL_SIZE - 1))]);
+            tick++;
+        }
+    }
+
+    private void transferPending(long currentTick) {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                scheduledActions.decrementAndGet();
+                continue;
+            }
+            long targetTick = Math.max(timeout.deadlineNanos / TICK_NANOS, currentTick);
+            timeout.remainingRounds = (targetTick - currentTick) / WHEEL_SIZE;
+            wheel[(int) (targetTick & (WHEEL_SIZE - 1))].add(timeout);
+        }
+    }
+
+    private void expireBucket(List<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.isCancelled()) {
+                iterator.remove();
+                scheduledActions.decrementAndGet();
+            } else if (timeout.remainingRounds <= 0) {
+                iterator.remove();
+                fire(timeout);
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    private void fire(Timeout timeout) {
+        scheduledActions.decrementAndGet();
+        firedActions.increment();
+        try {
+            timeout.handoff.execute(timeout::runIfActive);
+        } catch (Exception e) {
+            timeout.release();
+            log.error("Error running delayed action", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        timerThread.interrupt();
+    }
+
+    public final class Timeout {
+        private final Long key;
+        private final long deadlineNanos;
+        private final Runnable action;
+        private final Executor handoff;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private long remainingRounds; // меняется только потоком таймера
+
+        private Timeout(Long key, long deadlineNanos, Runnable action, Executor handoff) {
+            this.key = key;
+            this.deadlineNanos = deadlineNanos;
+            this.action = action;
+            this.handoff = handoff;
+        }
+
+        public boolean cancel() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return false;
+            }
+            cancelledActions.increment();
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        private void runIfActive() {
+            try {
+                if (!isCancelled()) {
+                    action.run();
+                }
+            } finally {
+                release();
+            }
+        }
+
+        // Снимает отработавшее или не принятое handoff действие с ключа
+        private void release() {
+            if (key != null) {
+                timeoutsByKey.computeIfPresent(key, (k, timeouts) -> {
+                    timeouts.remove(this);
+                    return timeouts.isEmpty() ? null : timeouts;
+                });
+            }
+        }
+    }
+}
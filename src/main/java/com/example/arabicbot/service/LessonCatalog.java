@@ -0,0 +1,68 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.dto.LessonView;
+import com.example.arabicbot.repository.LessonRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Каталог уроков в памяти. Уроки меняются только админами, поэтому чтение идет из снимка,
+// а после коммита любого изменения снимок перестраивается целиком (copy-on-write).
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LessonCatalog {
+
+    private final LessonRepository lessonRepository;
+
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>();
+    private final LongAdder rebuilds = new LongAdder();
+    private volatile long lastRebuildNanos;
+    private long nextVersion = 1; // только под synchronized rebuild()
+
+    public CatalogSnapshot snapshot() {
+        CatalogSnapshot current = snapshot.get();
+        return current != null ? current : loadInitial();
+    }
+
+    private synchronized CatalogSnapshot loadInitial() {
+        CatalogSnapshot current = snapshot.get();
+        return current != null ? current : rebuild();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.change() == CatalogChangedEvent.Change.LESSON) {
+            rebuild();
+        }
+    }
+
+    // synchronized гарантирует, что более старый снимок не подменит более новый
+    public synchronized CatalogSnapshot rebuild() {
+        long started = System.nanoTime();
+        List<LessonView> lessons = lessonRepository.findAllViews();
+        CatalogSnapshot rebuilt = new CatalogSnapshot(nextVersion++, lessons);
+        snapshot.set(rebuilt);
+        lastRebuildNanos = System.nanoTime() - started;
+        rebuilds.increment();
+        log.info("Lesson catalog v{} rebuilt with {} lessons in {} ms",
+                rebuilt.getVersion(), rebuilt.size(), lastRebuildNanos / 1_000_000);
+        return rebuilt;
+    }
+
+    // Снимок читается из памяти всегда, кроме самого первого обращения, поэтому вместо доли попаданий
+    // наблюдаем число перестроений и время последнего из них
+    public long getRebuilds() {
+        return rebuilds.sum();
+    }
+
+    public double getLastRebuildMs() {
+        return lastRebuildNanos / 1_000_000.0;
+    }
+}
@@ -3,28 +3,21 @@ package com.example.arabicbot.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
+// Состояния хранятся в общем ConversationSessionStore (idle TTL, ограничение по числу сессий)
 @Service
 @RequiredArgsConstructor
 public class LessonCreationService {
-    private final Map<Long, LessonCreationState> userStates = new ConcurrentHashMap<>();
+    private final ConversationSessionStore sessionStore;
 
     public LessonCreationState getOrCreateState(Long userId) {
-        return userStates.computeIfAbsent(userId, k -> new LessonCreationState());
+        return sessionStore.getOrCreate(userId, ConversationSession.Flow.LESSON_CREATION, LessonCreationState::new);
     }
 
     public LessonCreationState getState(Long userId) {
-        return userStates.get(userId);
+        return sessionStore.getState(userId, ConversationSession.Flow.LESSON_CREATION);
     }
 
     public void clearState(Long userId) {
-        userStates.remove(userId);
-    }
-
-    public boolean hasActiveCreation(Long userId) {
-        return userStates.containsKey(userId);
+        sessionStore.remove(userId, ConversationSession.Flow.LESSON_CREATION);
     }
 }
-
@@ -3,28 +3,21 @@ package com.example.arabicbot.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
+// Состояния хранятся в общем ConversationSessionStore (idle TTL, ограничение по числу сессий)
 @Service
 @RequiredArgsConstructor
 public class LessonEditService {
-    private final Map<Long, LessonEditState> userStates = new ConcurrentHashMap<>();
+    private final ConversationSessionStore sessionStore;
 
     public LessonEditState getOrCreateState(Long userId) {
-        return userStates.computeIfAbsent(userId, k -> new LessonEditState());
+        return sessionStore.getOrCreate(userId, ConversationSession.Flow.LESSON_EDIT, LessonEditState::new);
     }
 
     public LessonEditState getState(Long userId) {
-        return userStates.get(userId);
+        return sessionStore.getState(userId, ConversationSession.Flow.LESSON_EDIT);
     }
 
     public void clearState(Long userId) {
-        userStates.remove(userId);
-    }
-
-    public boolean hasActiveEdit(Long userId) {
-        return userStates.containsKey(userId);
+        sessionStore.remove(userId, ConversationSession.Flow.LESSON_EDIT);
     }
 }
-
@@ -0,0 +1,407 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.config.BotConfig;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+// Массовый импорт уроков из JSON или CSV. Файл читается потоком: в памяти только текущий урок
+// и пачка уже проверенных, которая сохраняется одной транзакцией (LessonService.createLessons).
+// Проверки те же, что у мастера создания урока (LessonCreationState.isComplete), плюс лимиты длины колонок,
+// чтобы одна слишком длинная строка не роняла всю пачку.
+//
+// JSON: массив уроков или {"lessons": [...]}, урок —
+//   {"title", "description", "videoFileId", "questions": [{"question", "answers": [4 строки], "correctAnswerIndex": 1-4}]}
+// CSV (разделитель , или ;, первая строка — заголовок), одна строка на вопрос:
+//   title, description, video_file_id, question, answer1, answer2, answer3, answer4, correct
+// Строки одного урока идут подряд; в продолжающих строках поля урока можно оставить пустыми.
+// Строка с теми же title, description и video_file_id продолжает урок, пока в нем меньше 3 вопросов:
+// два одинаковых урока подряд становятся двумя уроками, а не одним на 6 вопросов.
+//
+// Импорт идет в собственном потоке lesson-import, а не в пуле обработки обновлений: большой файл
+// не занимает воркер и не задерживает сообщения других пользователей. Документ принимается только
+// в сессии импорта (LESSON_IMPORT), которую открывает команда /import.
+@Slf4j
+@Service
+public class LessonImportService {
+
+    public static final int MAX_REPORTED_ERRORS = 20;
+
+    private static final int QUESTIONS_PER_LESSON = 3;
+    private static final int ANSWERS_PER_QUESTION = 4;
+    private static final int CSV_COLUMNS = 9;
+    private static final int MAX_HEADER_LENGTH = 64 * 1024;
+    // Лимиты колонок из сущностей Lesson, TestQuestion, TestAnswer
+    private static final int MAX_TITLE = 255;
+    private static final int MAX_DESCRIPTION = 2000;
+    private static final int MAX_VIDEO_FILE_ID = 255;
+    private static final int MAX_QUESTION = 1000;
+    private static final int MAX_ANSWER = 500;
+
+    public enum Format {
+        JSON, CSV
+    }
+
+    // imported/rejected — число уроков; errors — первые MAX_REPORTED_ERRORS ошибок
+    public record ImportReport(int imported, int rejected, List<String> errors, long elapsedMs) {
+    }
+
+    // Открывает содержимое файла; вызывается уже в потоке импорта
+    @FunctionalInterface
+    public interface ImportSource {
+        InputStream open() throws IOException;
+    }
+
+    private final LessonService lessonService;
+    private final ObjectMapper objectMapper;
+    private final ConversationSessionStore sessionStore;
+    private final int batchSize;
+    // Импорты редки и пишут пачками в одни и те же таблицы, поэтому выполняются по одному
+    private final ExecutorService executor;
+
+    public LessonImportService(LessonService lessonService, ObjectMapper objectMapper,
+                               ConversationSessionStore sessionStore, BotConfig botConfig) {
+        this.lessonService = lessonService;
+        this.objectMapper = objectMapper;
+        this.sessionStore = sessionStore;
+        this.batchSize = Math.max(1, botConfig.getImportBatchSize());
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lesson-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public LessonImportState getOrCreateState(Long userId) {
+        return sessionStore.getOrCreate(userId, ConversationSession.Flow.LESSON_IMPORT, LessonImportState::new);
+    }
+
+    public LessonImportState getState(Long userId) {
+        return sessionStore.getState(userId, ConversationSession.Flow.LESSON_IMPORT);
+    }
+
+    public void clearState(Long userId) {
+        sessionStore.remove(userId, ConversationSession.Flow.LESSON_IMPORT);
+    }
+
+    // Открытие, разбор и сохранение файла в потоке импорта; progress вызывается из него же
+    public CompletableFuture<ImportReport> importLessonsAsync(ImportSource source, Format format, IntConsumer progress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (InputStream input = source.open()) {
+                return importLessons(input, format, progress);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // null — расширение файла не поддерживается
+    public static Format detectFormat(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".json")) {
+            return Format.JSON;
+        }
+        if (name.endsWith(".csv")) {
+            return Format.CSV;
+        }
+        return null;
+    }
+
+    // progress получает число сохраненных уроков после каждой пачки
+    public ImportReport importLessons(InputStream input, Format format, IntConsumer progress) throws IOException {
+        long started = System.nanoTime();
+        ImportSession session = new ImportSession(progress);
+        if (format == Format.JSON) {
+            readJson(input, session);
+        } else {
+            readCsv(input, session);
+        }
+        session.flush();
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        log.info("Lesson import finished: {} imported, {} rejected in {} ms", session.imported, session.rejected, elapsedMs);
+        return new ImportReport(session.imported, session.rejected, session.errors, elapsedMs);
+    }
+
+    private void readJson(InputStream input, ImportSession session) throws IOException {
+        JsonFactory factory = objectMapper.getFactory();
+        try (JsonParser parser = factory.createParser(input)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                // {"lessons": [...]}
+                JsonToken lessons = null;
+                while (lessons == null && parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    token = parser.nextToken();
+                    if ("lessons".equals(field) && token == JsonToken.START_ARRAY) {
+                        lessons = token;
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                token = lessons;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of lessons");
+            }
+            int index = 0;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                index++;
+                String position = "Урок №" + index + " (строка " + parser.currentLocation().getLineNr() + ")";
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    session.reject(position, "ожидается объект урока");
+                    continue;
+                }
+                JsonNode node = parser.readValueAsTree();
+                session.accept(position, lessonFromJson(node));
+            }
+        }
+    }
+
+    private static LessonCreationState lessonFromJson(JsonNode node) {
+        LessonCreationState state = new LessonCreationState();
+        state.setTitle(text(node, "title"));
+        state.setDescription(text(node, "description"));
+        state.setVideoFileId(text(node, "videoFileId"));
+        for (JsonNode questionNode : node.path("questions")) {
+            QuestionData question = new QuestionData();
+            question.setQuestion(text(questionNode, "question"));
+            for (JsonNode answer : questionNode.path("answers")) {
+                question.addAnswer(answer.isValueNode() ? answer.asText() : null);
+            }
+            JsonNode correct = questionNode.path("correctAnswerIndex");
+            question.setCorrectAnswerIndex(correct.canConvertToInt() ? correct.asInt() : null);
+            state.getQuestions().add(question);
+        }
+        return state;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value != null && value.isValueNode() && !value.isNull() ? value.asText() : null;
+    }
+
+    private void readCsv(InputStream input, ImportSession session) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        reader.mark(MAX_HEADER_LENGTH);
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            return;
+        }
+        reader.reset();
+        if (headerLine.startsWith("\uFEFF")) {
+            reader.read(); // BOM, который добавляет Excel
+        }
+        char delimiter = count(headerLine, ';') > count(headerLine, ',') ? ';' : ',';
+        CsvRowReader rows = new CsvRowReader(reader, delimiter);
+        rows.next(); // заголовок
+
+        LessonCreationState current = null;
+        String currentPosition = null;
+        List<String> row;
+        while ((row = rows.next()) != null) {
+            String position = "Строка " + rows.getRowLine();
+            if (row.size() != CSV_COLUMNS) {
+                session.reject(position, "ожидается " + CSV_COLUMNS + " колонок, найдено " + row.size());
+                continue;
+            }
+            String title = blankToNull(row.get(0));
+            String description = blankToNull(row.get(1));
+            String videoFileId = blankToNull(row.get(2));
+            // Строка без названия всегда продолжает урок (лишний вопрос попадет в отчет об ошибках)
+            boolean continues = current != null && (title == null
+                    || (current.getQuestions().size() < QUESTIONS_PER_LESSON && title.equals(current.getTitle())
+                    && equalsNullable(description, current.getDescription())
+                    && equalsNullable(videoFileId, current.getVideoFileId())));
+            if (!continues) {
+                if (current != null) {
+                    session.accept(currentPosition, current);
+                }
+                current = new LessonCreationState();
+                current.setTitle(title);
+                current.setDescription(description);
+                current.setVideoFileId(videoFileId);
+                currentPosition = position;
+            }
+            QuestionData question = new QuestionData();
+            question.setQuestion(blankToNull(row.get(3)));
+            for (int i = 4; i < 4 + ANSWERS_PER_QUESTION; i++) {
+                question.addAnswer(blankToNull(row.get(i)));
+            }
+            question.setCorrectAnswerIndex(parseIndex(row.get(8)));
+            current.getQuestions().add(question);
+        }
+        if (current != null) {
+            session.accept(currentPosition, current);
+        }
+    }
+
+    // null — урок корректен
+    static String validate(LessonCreationState state) {
+        if (isBlank(state.getTitle())) {
+            return "нет названия";
+        }
+        if (state.getTitle().length() > MAX_TITLE) {
+            return "название длиннее " + MAX_TITLE + " символов";
+        }
+        if (isBlank(state.getDescription())) {
+            return "нет описания";
+        }
+        if (state.getDescription().length() > MAX_DESCRIPTION) {
+            return "описание длиннее " + MAX_DESCRIPTION + " символов";
+        }
+        if (isBlank(state.getVideoFileId())) {
+            return "нет видео (file_id)";
+        }
+        if (state.getVideoFileId().length() > MAX_VIDEO_FILE_ID) {
+            return "file_id видео длиннее " + MAX_VIDEO_FILE_ID + " символов";
+        }
+        if (state.getQuestions().size() != QUESTIONS_PER_LESSON) {
+            return "нужно " + QUESTIONS_PER_LESSON + " вопроса, найдено " + state.getQuestions().size();
+        }
+        for (int i = 0; i < state.getQuestions().size(); i++) {
+            QuestionData question = state.getQuestions().get(i);
+            String problem = validateQuestion(question);
+            if (problem != null) {
+                return "вопрос " + (i + 1) + ": " + problem;
+            }
+        }
+        // Итоговая проверка теми же правилами, что и у мастера создания
+        return state.isComplete() ? null : "урок заполнен не полностью";
+    }
+
+    private static String validateQuestion(QuestionData question) {
+        if (isBlank(question.getQuestion())) {
+            return "нет текста вопроса";
+        }
+        if (question.getQuestion().length() > MAX_QUESTION) {
+            return "текст длиннее " + MAX_QUESTION + " символов";
+        }
+        if (question.getAnswers().size() != ANSWERS_PER_QUESTION) {
+            return "нужно " + ANSWERS_PER_QUESTION + " ответа, найдено " + question.getAnswers().size();
+        }
+        for (int i = 0; i < question.getAnswers().size(); i++) {
+            String answer = question.getAnswers().get(i);
+            if (isBlank(answer)) {
+                return "пустой ответ " + (i + 1);
+            }
+            if (answer.length() > MAX_ANSWER) {
+                return "ответ " + (i + 1) + " длиннее " + MAX_ANSWER + " символов";
+            }
+        }
+        Integer correct = question.getCorrectAnswerIndex();
+        if (correct == null || correct < 1 || correct > ANSWERS_PER_QUESTION) {
+            return "номер правильного ответа должен быть от 1 до " + ANSWERS_PER_QUESTION;
+        }
+        return null;
+    }
+
+    private static Integer parseIndex(String value) {
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static String blankToNull(String value) {
+        return isBlank(value) ? null : value.trim();
+    }
+
+    private static boolean equalsNullable(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static int count(String line, char c) {
+        int count = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Состояние одного импорта: текущая пачка, счетчики и ошибки
+    private final class ImportSession {
+        private final IntConsumer progress;
+        private final List<LessonCreationState> batch = new ArrayList<>(batchSize);
+        private final List<String> batchPositions = new ArrayList<>(batchSize);
+        private final List<String> errors = new ArrayList<>();
+        private int imported;
+        private int rejected;
+
+        private ImportSession(IntConsumer progress) {
+            this.progress = progress;
+        }
+
+        private void accept(String position, LessonCreationState state) {
+            String problem = validate(state);
+            if (problem != null) {
+                reject(position, problem);
+                return;
+            }
+            batch.add(state);
+            batchPositions.add(position);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void reject(String position, String problem) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(position + ": " + problem);
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                imported += lessonService.createLessons(batch);
+                progress.accept(imported);
+            } catch (RuntimeException e) {
+                // Пачка откатилась целиком
+                log.error("Failed to save lesson import batch of {} lessons", batch.size(), e);
+                reject(batchPositions.get(0) + " — " + batchPositions.get(batchPositions.size() - 1),
+                        "пачка из " + batch.size() + " уроков не сохранена: " + e.getMessage());
+                rejected += batch.size() - 1;
+            }
+            batch.clear();
+            batchPositions.clear();
+        }
+    }
+}
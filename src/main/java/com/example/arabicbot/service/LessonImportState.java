@@ -0,0 +1,10 @@
+package com.example.arabicbot.service;
+
+import lombok.Data;
+
+// Сессия импорта: начинается командой /import и ждет документ от админа
+@Data
+public class LessonImportState {
+    // Имя файла, который сейчас импортируется; null — ждем документ
+    private String fileName;
+}
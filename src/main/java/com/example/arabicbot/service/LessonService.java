@@ -1,5 +1,8 @@
 package com.example.arabicbot.service;
 
+import com.example.arabicbot.dto.AnswerView;
+import com.example.arabicbot.dto.LessonView;
+import com.example.arabicbot.dto.QuestionView;
 import com.example.arabicbot.entity.Lesson;
 import com.example.arabicbot.entity.TestAnswer;
 import com.example.arabicbot.entity.TestQuestion;
@@ -7,6 +10,7 @@ import com.example.arabicbot.repository.LessonRepository;
 import com.example.arabicbot.repository.TestAnswerRepository;
 import com.example.arabicbot.repository.TestQuestionRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,140 +24,130 @@ public class LessonService {
     private final LessonRepository lessonRepository;
     private final TestQuestionRepository testQuestionRepository;
     private final TestAnswerRepository testAnswerRepository;
+    private final LessonCatalog lessonCatalog;
+    private final ApplicationEventPublisher eventPublisher;
 
-    @Transactional(readOnly = true)
-    public List<Lesson> getAllLessons() {
-        List<Lesson> lessons = lessonRepository.findAllByOrderByIdAsc();
-        return lessons != null ? lessons : new ArrayList<>();
+    // Чтение уроков идет из каталога в памяти, без обращения к БД
+    public List<LessonView> getAllLessons() {
+        return lessonCatalog.snapshot().getLessons();
     }
 
-    public Optional<Lesson> getLessonById(Long id) {
-        return lessonRepository.findById(id);
+    public Optional<LessonView> getLessonById(Long id) {
+        return lessonCatalog.snapshot().findLesson(id);
     }
 
-    @Transactional(readOnly = true)
-    public Optional<TestQuestion> getFirstQuestionForLesson(Long lessonId) {
-        List<TestQuestion> questions = testQuestionRepository.findByLessonIdOrderByIdAsc(lessonId);
-        return questions.isEmpty() ? Optional.empty() : Optional.of(questions.get(0));
+    public Optional<QuestionView> getQuestionById(Long questionId) {
+        return testQuestionRepository.findViewById(questionId);
     }
 
-    @Transactional(readOnly = true)
-    public Optional<TestQuestion> getQuestionById(Long questionId) {
-        return testQuestionRepository.findById(questionId);
+    public Optional<Long> getLessonIdForQuestion(Long questionId) {
+        return testQuestionRepository.findLessonIdById(questionId);
     }
 
-    public Optional<Lesson> getNextLesson(Long currentLessonId) {
-        List<Lesson> allLessons = getAllLessons();
-        for (int i = 0; i < allLessons.size(); i++) {
-            if (allLessons.get(i).getId().equals(currentLessonId) && i < allLessons.size() - 1) {
-                return Optional.of(allLessons.get(i + 1));
-            }
-        }
-        return Optional.empty();
+    public Optional<LessonView> getNextLesson(Long currentLessonId) {
+        return lessonCatalog.snapshot().nextLesson(currentLessonId);
+    }
+
+    @Transactional
+    public LessonView createLessonWithQuestion(LessonCreationState state) {
+        // Урок целиком сохраняется одним каскадным persist: id берутся из пула
+        // последовательностей, а вставки уходят пачками по таблицам (урок, вопросы, ответы)
+        Lesson lesson = buildLesson(state);
+        lesson = lessonRepository.save(lesson);
+
+        eventPublisher.publishEvent(new CatalogChangedEvent(lesson.getId(), CatalogChangedEvent.Change.LESSON));
+        return new LessonView(lesson.getId(), lesson.getTitle(), lesson.getDescription(), lesson.getVideoFileId());
     }
 
+    // Массовое создание уроков (импорт): вся пачка — одна транзакция и одно событие для каталога
     @Transactional
-    public Lesson createLessonWithQuestion(LessonCreationState state) {
-        // Создаем урок
+    public int createLessons(List<LessonCreationState> states) {
+        List<Lesson> lessons = new ArrayList<>(states.size());
+        for (LessonCreationState state : states) {
+            lessons.add(buildLesson(state));
+        }
+        lessonRepository.saveAll(lessons);
+        eventPublisher.publishEvent(new CatalogChangedEvent(null, CatalogChangedEvent.Change.LESSON));
+        return lessons.size();
+    }
+
+    private static Lesson buildLesson(LessonCreationState state) {
         Lesson lesson = new Lesson();
         lesson.setTitle(state.getTitle());
         lesson.setDescription(state.getDescription());
         lesson.setVideoFileId(state.getVideoFileId());
-        lesson = lessonRepository.save(lesson);
+        lesson.setQuestions(new ArrayList<>(state.getQuestions().size()));
 
-        // Создаем 3 вопроса
         for (QuestionData questionData : state.getQuestions()) {
-            // Создаем вопрос
             TestQuestion question = new TestQuestion();
             question.setLesson(lesson);
             question.setQuestion(questionData.getQuestion());
-            question = testQuestionRepository.save(question);
 
-            // Создаем 4 ответа
             List<String> answers = questionData.getAnswers();
             int correctIndex = questionData.getCorrectAnswerIndex() - 1; // Конвертируем 1-4 в 0-3
+            question.setAnswers(new ArrayList<>(answers.size()));
 
             for (int i = 0; i < answers.size(); i++) {
                 TestAnswer answer = new TestAnswer();
                 answer.setQuestion(question);
                 answer.setText(answers.get(i));
                 answer.setIsCorrect(i == correctIndex);
-                testAnswerRepository.save(answer);
+                question.getAnswers().add(answer);
             }
+            lesson.getQuestions().add(question);
         }
-
         return lesson;
     }
 
-    @Transactional(readOnly = true)
-    public Optional<TestQuestion> getNextQuestionForLesson(Long lessonId, Long currentQuestionId) {
-        List<TestQuestion> questions = testQuestionRepository.findByLessonIdOrderByIdAsc(lessonId);
-        for (int i = 0; i < questions.size(); i++) {
-            if (questions.get(i).getId().equals(currentQuestionId) && i < questions.size() - 1) {
-                return Optional.of(questions.get(i + 1));
-            }
-        }
-        return Optional.empty();
-    }
-
-    @Transactional(readOnly = true)
-    public List<TestQuestion> getAllQuestionsForLesson(Long lessonId) {
-        return testQuestionRepository.findByLessonIdOrderByIdAsc(lessonId);
+    public List<QuestionView> getAllQuestionsForLesson(Long lessonId) {
+        return testQuestionRepository.findViewsByLessonId(lessonId);
     }
 
+    // Правки уроков — один UPDATE без чтения сущности; 0 измененных строк значит, что урока уже нет
     @Transactional
     public void updateLessonTitle(Long lessonId, String title) {
-        Lesson lesson = lessonRepository.findById(lessonId)
-                .orElseThrow(() -> new RuntimeException("Урок не найден"));
-        lesson.setTitle(title);
-        lessonRepository.save(lesson);
+        requireUpdated(lessonRepository.updateTitle(lessonId, title), "Урок не найден");
+        eventPublisher.publishEvent(new CatalogChangedEvent(lessonId, CatalogChangedEvent.Change.LESSON));
     }
 
     @Transactional
     public void updateLessonVideo(Long lessonId, String videoFileId) {
-        Lesson lesson = lessonRepository.findById(lessonId)
-                .orElseThrow(() -> new RuntimeException("Урок не найден"));
-        lesson.setVideoFileId(videoFileId);
-        lessonRepository.save(lesson);
+        requireUpdated(lessonRepository.updateVideoFileId(lessonId, videoFileId), "Урок не найден");
+        eventPublisher.publishEvent(new CatalogChangedEvent(lessonId, CatalogChangedEvent.Change.LESSON));
     }
 
     @Transactional
     public void updateLessonDescription(Long lessonId, String description) {
-        Lesson lesson = lessonRepository.findById(lessonId)
-                .orElseThrow(() -> new RuntimeException("Урок не найден"));
-        lesson.setDescription(description);
-        lessonRepository.save(lesson);
+        requireUpdated(lessonRepository.updateDescription(lessonId, description), "Урок не найден");
+        eventPublisher.publishEvent(new CatalogChangedEvent(lessonId, CatalogChangedEvent.Change.LESSON));
     }
 
+    // Урок передается явно: по нему проверяется принадлежность ответа и сбрасывается план теста только этого урока
     @Transactional
-    public void updateAnswerText(Long answerId, String newText) {
-        TestAnswer answer = testAnswerRepository.findById(answerId)
-                .orElseThrow(() -> new RuntimeException("Ответ не найден"));
-        answer.setText(newText);
-        testAnswerRepository.save(answer);
+    public void updateAnswerText(Long lessonId, Long answerId, String newText) {
+        requireUpdated(testAnswerRepository.updateText(lessonId, answerId, newText), "Ответ не найден");
+        eventPublisher.publishEvent(new CatalogChangedEvent(lessonId, CatalogChangedEvent.Change.QUIZ));
     }
 
     @Transactional
-    public void updateCorrectAnswer(Long questionId, int correctAnswerIndex) {
-        List<TestAnswer> answers = testAnswerRepository.findByQuestionIdOrderByIdAsc(questionId);
-        if (correctAnswerIndex < 1 || correctAnswerIndex > answers.size()) {
+    public void updateCorrectAnswer(Long lessonId, Long questionId, int correctAnswerIndex) {
+        if (correctAnswerIndex < 1) {
             throw new RuntimeException("Неверный индекс правильного ответа");
         }
-        
-        // Сбрасываем все ответы как неправильные
-        for (TestAnswer answer : answers) {
-            answer.setIsCorrect(false);
-            testAnswerRepository.save(answer);
+        // Индекс 1-4, в запросе смещение 0-3
+        requireUpdated(testAnswerRepository.markCorrect(lessonId, questionId, correctAnswerIndex - 1),
+                "Неверный индекс правильного ответа");
+        eventPublisher.publishEvent(new CatalogChangedEvent(lessonId, CatalogChangedEvent.Change.QUIZ));
+    }
+
+    private static void requireUpdated(int updatedRows, String message) {
+        if (updatedRows == 0) {
+            throw new RuntimeException(message);
         }
-        
-        // Устанавливаем правильный ответ (индекс 1-4, конвертируем в 0-3)
-        answers.get(correctAnswerIndex - 1).setIsCorrect(true);
-        testAnswerRepository.save(answers.get(correctAnswerIndex - 1));
     }
 
-    @Transactional(readOnly = true)
-    public List<TestAnswer> getAnswersForQuestion(Long questionId) {
-        return testAnswerRepository.findByQuestionIdOrderByIdAsc(questionId);
+    public List<AnswerView> getAnswersForQuestion(Long questionId) {
+        return testAnswerRepository.findViewsByQuestionId(questionId);
     }
 
     @Transactional
@@ -161,6 +155,7 @@ public class LessonService {
         Lesson lesson = lessonRepository.findById(lessonId)
                 .orElseThrow(() -> new RuntimeException("Урок не найден"));
         lessonRepository.delete(lesson);
+        eventPublisher.publishEvent(new CatalogChangedEvent(lessonId, CatalogChangedEvent.Change.LESSON));
     }
 }
 
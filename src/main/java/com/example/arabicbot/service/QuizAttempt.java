@@ -0,0 +1,8 @@
+package com.example.arabicbot.service;
+
+import java.time.Instant;
+
+// Событие "пользователь ответил на вопрос" для истории попыток
+public record QuizAttempt(long userId, long lessonId, long questionId, long answerId, boolean correct,
+                          Instant answeredAt) {
+}
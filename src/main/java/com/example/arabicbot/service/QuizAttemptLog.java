@@ -0,0 +1,212 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.config.BotConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Журнал попыток ответа. record() только кладет событие в кольцевой буфер и никогда не ждет БД;
+// фоновый поток забирает события пачками и пишет их в quiz_attempts одним batch insert.
+// Таблица секционирована по месяцам answered_at; секции создаются по мере надобности.
+// Если запись отстает и буфер переполнен, новые события отбрасываются и считаются в getDroppedAttempts().
+// Неудачная пачка повторяется с растущей паузой; после max-retries повторов она отбрасывается
+// (getFailedBatches(), события — в getDroppedAttempts()), чтобы недоступная БД не держала писателя вечно.
+@Slf4j
+@Service
+public class QuizAttemptLog {
+
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS quiz_attempts (" +
+            "id BIGSERIAL, " +
+            "user_id BIGINT NOT NULL, " +
+            "lesson_id BIGINT NOT NULL, " +
+            "question_id BIGINT NOT NULL, " +
+            "answer_id BIGINT NOT NULL, " +
+            "correct BOOLEAN NOT NULL, " +
+            "answered_at TIMESTAMPTZ NOT NULL, " +
+            "PRIMARY KEY (id, answered_at)" +
+            ") PARTITION BY RANGE (answered_at)";
+    private static final String CREATE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS quiz_attempts_user_idx ON quiz_attempts (user_id, answered_at)";
+    private static final String INSERT_SQL =
+            "INSERT INTO quiz_attempts (user_id, lesson_id, question_id, answer_id, correct, answered_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final long MAX_RETRY_DELAY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RingBuffer<QuizAttempt> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int maxRetries;
+    private final Set<YearMonth> partitions = ConcurrentHashMap.newKeySet();
+    private final Thread writerThread;
+    private final Timer insertTimer;
+    private volatile boolean running = true;
+
+    private final LongAdder recordedAttempts = new LongAdder();
+    private final LongAdder droppedAttempts = new LongAdder();
+    private final LongAdder writtenAttempts = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    public QuizAttemptLog(JdbcTemplate jdbcTemplate, BotConfig botConfig, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.insertTimer = Timer.builder("bot.db.batch")
+                .description("JDBC batch write time")
+                .tag("table", "quiz_attempts")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.buffer = new RingBuffer<>(botConfig.getAttemptsBufferSize());
+        this.batchSize = Math.max(1, botConfig.getAttemptsBatchSize());
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(10, botConfig.getAttemptsFlushIntervalMs()));
+        this.maxRetries = Math.max(0, botConfig.getAttemptsMaxRetries());
+        this.writerThread = new Thread(this::runWriter, "quiz-attempts-writer");
+        this.writerThread.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+        jdbcTemplate.execute(CREATE_INDEX_SQL);
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        ensurePartition(current);
+        ensurePartition(current.plusMonths(1));
+        writerThread.start();
+    }
+
+    public void record(long userId, long lessonId, long questionId, long answerId, boolean correct) {
+        if (buffer.offer(new QuizAttempt(userId, lessonId, questionId, answerId, correct, Instant.now()))) {
+            recordedAttempts.increment();
+        } else {
+            droppedAttempts.increment();
+        }
+    }
+
+    public long getRecordedAttempts() {
+        return recordedAttempts.sum();
+    }
+
+    public long getDroppedAttempts() {
+        return droppedAttempts.sum();
+    }
+
+    public long getWrittenAttempts() {
+        return writtenAttempts.sum();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    public int getBufferedAttempts() {
+        return buffer.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (buffer.size() > 0) {
+            log.warn("Quiz attempt log stopped with {} unwritten attempts", buffer.size());
+        }
+    }
+
+    private void runWriter() {
+        List<QuizAttempt> batch = new ArrayList<>(batchSize);
+        int failures = 0; // неудачных попыток записать текущую пачку
+        while (true) {
+            boolean stopping = !running;
+            if (batch.isEmpty()) {
+                buffer.drainTo(batch, batchSize);
+            }
+            if (!batch.isEmpty()) {
+                if (writeBatch(batch, failures)) {
+                    batch.clear();
+                    failures = 0;
+                    // Полная пачка — в буфере, скорее всего, есть еще, пишем без паузы
+                    if (buffer.size() >= batchSize) {
+                        continue;
+                    }
+                } else if (++failures > maxRetries || stopping) {
+                    failedBatches.increment();
+                    droppedAttempts.add(batch.size());
+                    log.error("Dropping {} quiz attempts after {} failed writes", batch.size(), failures);
+                    batch.clear();
+                    failures = 0;
+                }
+            }
+            if (stopping) {
+                if (buffer.size() == 0) {
+                    return;
+                }
+                continue;
+            }
+            LockSupport.parkNanos(failures > 0 ? retryDelayNanos(failures) : flushIntervalNanos);
+        }
+    }
+
+    // Пауза перед повтором удваивается с каждой неудачей, но не больше минуты
+    private long retryDelayNanos(int failures) {
+        return Math.min(MAX_RETRY_DELAY_NANOS, flushIntervalNanos << Math.min(failures, 20));
+    }
+
+    private boolean writeBatch(List<QuizAttempt> batch, int previousFailures) {
+        try {
+            for (QuizAttempt attempt : batch) {
+                ensurePartition(YearMonth.from(attempt.answeredAt().atZone(ZoneOffset.UTC)));
+            }
+            insertTimer.record(() -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, attempt) -> {
+                ps.setLong(1, attempt.userId());
+                ps.setLong(2, attempt.lessonId());
+                ps.setLong(3, attempt.questionId());
+                ps.setLong(4, attempt.answerId());
+                ps.setBoolean(5, attempt.correct());
+                ps.setTimestamp(6, Timestamp.from(attempt.answeredAt()));
+            }));
+            writtenAttempts.add(batch.size());
+            return true;
+        } catch (Exception e) {
+            // Пачка остается у писателя и повторяется после паузы, новые события копятся в буфере.
+            // Стек пишем только при первой неудаче, чтобы лежащая БД не засыпала лог.
+            if (previousFailures == 0) {
+                log.warn("Failed to write {} quiz attempts, retrying with backoff", batch.size(), e);
+            } else {
+                log.debug("Retry {} of {} quiz attempts failed: {}", previousFailures, batch.size(), e.toString());
+            }
+            return false;
+        }
+    }
+
+    private void ensurePartition(YearMonth month) {
+        if (partitions.contains(month)) {
+            return;
+        }
+        Instant from = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant to = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS quiz_attempts_" + month.format(PARTITION_SUFFIX) +
+                " PARTITION OF quiz_attempts FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        partitions.add(month);
+    }
+}
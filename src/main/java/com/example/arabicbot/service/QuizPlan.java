@@ -0,0 +1,78 @@
+package com.example.arabicbot.service;
+
+import java.util.Arrays;
+
+// Скомпилированный тест урока: вопросы по возрастанию id, ответы каждого вопроса по возрастанию id
+// и индекс правильного ответа. Неизменяем, проверка ответа и переход к следующему вопросу —
+// операции над массивами без обращения к БД.
+public final class QuizPlan {
+
+    private final Long lessonId;
+    private final long[] questionIds;
+    private final String[] questionTexts;
+    private final long[][] answerIds;
+    private final String[][] answerTexts;
+    private final int[] correctAnswerIndexes; // -1, если правильный ответ не отмечен
+
+    QuizPlan(Long lessonId, long[] questionIds, String[] questionTexts,
+             long[][] answerIds, String[][] answerTexts, int[] correctAnswerIndexes) {
+        this.lessonId = lessonId;
+        this.questionIds = questionIds;
+        this.questionTexts = questionTexts;
+        this.answerIds = answerIds;
+        this.answerTexts = answerTexts;
+        this.correctAnswerIndexes = correctAnswerIndexes;
+    }
+
+    public Long getLessonId() {
+        return lessonId;
+    }
+
+    public int getQuestionCount() {
+        return questionIds.length;
+    }
+
+    // Индекс вопроса в тесте или -1
+    public int indexOfQuestion(long questionId) {
+        int index = Arrays.binarySearch(questionIds, questionId);
+        return index >= 0 ? index : -1;
+    }
+
+    public long getQuestionId(int questionIndex) {
+        return questionIds[questionIndex];
+    }
+
+    public String getQuestionText(int questionIndex) {
+        return questionTexts[questionIndex];
+    }
+
+    public int getAnswerCount(int questionIndex) {
+        return answerIds[questionIndex].length;
+    }
+
+    // Индекс ответа внутри вопроса или -1
+    public int indexOfAnswer(int questionIndex, long answerId) {
+        int index = Arrays.binarySearch(answerIds[questionIndex], answerId);
+        return index >= 0 ? index : -1;
+    }
+
+    public long getAnswerId(int questionIndex, int answerIndex) {
+        return answerIds[questionIndex][answerIndex];
+    }
+
+    public String getAnswerText(int questionIndex, int answerIndex) {
+        return answerTexts[questionIndex][answerIndex];
+    }
+
+    public int getCorrectAnswerIndex(int questionIndex) {
+        return correctAnswerIndexes[questionIndex];
+    }
+
+    public boolean isCorrect(int questionIndex, int answerIndex) {
+        return correctAnswerIndexes[questionIndex] == answerIndex;
+    }
+
+    public boolean hasNextQuestion(int questionIndex) {
+        return questionIndex + 1 < questionIds.length;
+    }
+}
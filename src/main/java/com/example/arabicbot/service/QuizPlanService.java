@@ -0,0 +1,103 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.entity.TestAnswer;
+import com.example.arabicbot.entity.TestQuestion;
+import com.example.arabicbot.repository.TestQuestionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Кэш скомпилированных тестов по урокам. План компилируется при первом обращении
+// и сбрасывается после коммита любого изменения урока, его вопросов или ответов.
+// Кэшируются только планы уроков из каталога, поэтому размер кэша ограничен числом уроков.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QuizPlanService {
+
+    private final TestQuestionRepository testQuestionRepository;
+    private final LessonCatalog lessonCatalog;
+
+    private final Map<Long, QuizPlan> plans = new ConcurrentHashMap<>();
+    // Растет при каждой инвалидации: план, скомпилированный до нее, в кэш не попадет
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public QuizPlan getPlan(Long lessonId) {
+        QuizPlan plan = plans.get(lessonId);
+        if (plan != null) {
+            hits.increment();
+            return plan;
+        }
+        misses.increment();
+        long generation = invalidations.get();
+        QuizPlan compiled = compile(lessonId);
+        // id приходит из кнопки: план несуществующего урока отдаем, но не запоминаем
+        if (invalidations.get() == generation && lessonCatalog.snapshot().findLesson(lessonId).isPresent()) {
+            plans.putIfAbsent(lessonId, compiled);
+        }
+        return compiled;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        invalidations.incrementAndGet();
+        if (event.lessonId() != null) {
+            plans.remove(event.lessonId());
+        } else {
+            plans.clear();
+        }
+    }
+
+    private QuizPlan compile(Long lessonId) {
+        // Один запрос на урок: вопросы с ответами через fetch join
+        List<TestQuestion> questions = testQuestionRepository.findWithAnswersByLessonId(lessonId);
+        int questionCount = questions.size();
+        long[] questionIds = new long[questionCount];
+        String[] questionTexts = new String[questionCount];
+        long[][] answerIds = new long[questionCount][];
+        String[][] answerTexts = new String[questionCount][];
+        int[] correctAnswerIndexes = new int[questionCount];
+
+        for (int q = 0; q < questionCount; q++) {
+            TestQuestion question = questions.get(q);
+            List<TestAnswer> answers = question.getAnswers();
+            questionIds[q] = question.getId();
+            questionTexts[q] = question.getQuestion();
+            answerIds[q] = new long[answers.size()];
+            answerTexts[q] = new String[answers.size()];
+            correctAnswerIndexes[q] = -1;
+            for (int a = 0; a < answers.size(); a++) {
+                TestAnswer answer = answers.get(a);
+                answerIds[q][a] = answer.getId();
+                answerTexts[q][a] = answer.getText();
+                if (Boolean.TRUE.equals(answer.getIsCorrect())) {
+                    correctAnswerIndexes[q] = a;
+                }
+            }
+        }
+        log.debug("Compiled quiz plan for lesson {} with {} questions", lessonId, questionCount);
+        return new QuizPlan(lessonId, questionIds, questionTexts, answerIds, answerTexts, correctAnswerIndexes);
+    }
+
+    public int getCachedPlans() {
+        return plans.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.arabicbot.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Ограниченная lock-free очередь на кольцевом массиве: много писателей, один читатель.
+// У каждой ячейки свой номер последовательности, поэтому писатели не блокируют друг друга,
+// а переполнение не ждет читателя — offer просто возвращает false.
+public final class RingBuffer<T> {
+
+    private final int mask;
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head; // меняет только поток читателя
+
+    // capacity округляется вверх до степени двойки
+    public RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean offer(T item) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items.set(index, item);
+                    sequences.set(index, position + 1); // публикуем ячейку читателю
+                    return true;
+                }
+            } else if (sequence < position) {
+                return false; // ячейку еще не освободил читатель — буфер полон
+            }
+            // Иначе другой писатель уже занял эту позицию — берем следующую
+        }
+    }
+
+    // Забирает до maxItems элементов в target, возвращает сколько забрал. Вызывает только читатель.
+    public int drainTo(List<T> target, int maxItems) {
+        int drained = 0;
+        while (drained < maxItems) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            target.add(items.get(index));
+            items.set(index, null);
+            sequences.set(index, head + mask + 1); // ячейка свободна для следующего круга
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // Приблизительный размер: писатели могли занять позиции, но еще не опубликовать
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+}
@@ -1,56 +1,75 @@
 package com.example.arabicbot.service;
 
+import com.example.arabicbot.config.BotConfig;
 import com.example.arabicbot.entity.UserProgress;
 import com.example.arabicbot.repository.UserProgressRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
+// Прогресс пользователей читается из памяти, а запись идет через CachedWriteBehindStore:
+// повторные изменения одного пользователя объединяются и уходят в БД пачкой upsert-ов.
+// Обе операции записи перезаписывают строку целиком, поэтому читать ее перед записью не нужно.
 @Service
-@RequiredArgsConstructor
 public class UserProgressService {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO user_progress (user_id, current_lesson_id, last_answered_question_id) VALUES (?, ?, ?) " +
+            "ON CONFLICT (user_id) DO UPDATE SET current_lesson_id = EXCLUDED.current_lesson_id, " +
+            "last_answered_question_id = EXCLUDED.last_answered_question_id";
+
+    // Отметка "строки в БД нет", чтобы не ходить в БД повторно за отсутствующим прогрессом
+    private static final UserProgress NO_PROGRESS = new UserProgress();
+
     private final UserProgressRepository userProgressRepository;
+    private final CachedWriteBehindStore<UserProgress> store;
+
+    public UserProgressService(UserProgressRepository userProgressRepository, JdbcTemplate jdbcTemplate,
+                               BotConfig botConfig, MeterRegistry meterRegistry) {
+        this.userProgressRepository = userProgressRepository;
+        this.store = new CachedWriteBehindStore<>("user_progress", botConfig.getProgressMaxCachedUsers(),
+                botConfig.getProgressFlushIntervalMs(), botConfig.getProgressFlushBatchSize(),
+                jdbcTemplate, UPSERT_SQL, (ps, progress) -> {
+                    ps.setLong(1, progress.getUserId());
+                    CachedWriteBehindStore.setNullableLong(ps, 2, progress.getCurrentLessonId());
+                    CachedWriteBehindStore.setNullableLong(ps, 3, progress.getLastAnsweredQuestionId());
+                }, meterRegistry);
+    }
 
     public Optional<UserProgress> getUserProgress(Long userId) {
-        return userProgressRepository.findByUserId(userId);
+        UserProgress progress = store.get(userId,
+                id -> userProgressRepository.findByUserId(id).orElse(NO_PROGRESS));
+        return progress == NO_PROGRESS ? Optional.empty() : Optional.of(progress);
     }
 
-    @Transactional
     public UserProgress saveOrUpdateProgress(Long userId, Long lessonId, Long questionId) {
-        Optional<UserProgress> existing = userProgressRepository.findByUserId(userId);
-        
-        if (existing.isPresent()) {
-            UserProgress progress = existing.get();
-            progress.setCurrentLessonId(lessonId);
-            progress.setLastAnsweredQuestionId(questionId);
-            return userProgressRepository.save(progress);
-        } else {
-            UserProgress progress = new UserProgress();
-            progress.setUserId(userId);
-            progress.setCurrentLessonId(lessonId);
-            progress.setLastAnsweredQuestionId(questionId);
-            return userProgressRepository.save(progress);
-        }
-    }
-
-    @Transactional
+        UserProgress progress = new UserProgress(userId, lessonId, questionId);
+        store.put(userId, progress);
+        return progress;
+    }
+
     public void updateCurrentLesson(Long userId, Long lessonId) {
-        Optional<UserProgress> existing = userProgressRepository.findByUserId(userId);
-        
-        if (existing.isPresent()) {
-            UserProgress progress = existing.get();
-            progress.setCurrentLessonId(lessonId);
-            progress.setLastAnsweredQuestionId(null);
-            userProgressRepository.save(progress);
-        } else {
-            UserProgress progress = new UserProgress();
-            progress.setUserId(userId);
-            progress.setCurrentLessonId(lessonId);
-            progress.setLastAnsweredQuestionId(null);
-            userProgressRepository.save(progress);
-        }
+        store.put(userId, new UserProgress(userId, lessonId, null));
     }
-}
 
+    // Синхронно записывает все накопленные изменения
+    public void flush() {
+        store.flush();
+    }
+
+    public int getPendingWrites() {
+        return store.getPendingWrites();
+    }
+
+    public int getCachedUsers() {
+        return store.getCachedUsers();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        store.close();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.config.BotConfig;
+import com.example.arabicbot.entity.UserStats;
+import com.example.arabicbot.repository.UserStatsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+// Статистика пользователя поддерживается инкрементально: каждое событие меняет одну строку
+// в памяти, а запись в БД идет через CachedWriteBehindStore. Профиль — одно обращение к кэшу
+// независимо от длины истории. Изменения одного пользователя идут последовательно
+// (из его очереди в UpdateDispatcher), поэтому read-modify-write без блокировок.
+@Service
+public class UserStatsService {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO user_stats (user_id, current_lesson_id, answers_total, answers_correct, lessons_completed, " +
+            "current_streak, best_streak, last_active_date, completed_lesson_ids) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (user_id) DO UPDATE SET current_lesson_id = EXCLUDED.current_lesson_id, " +
+            "answers_total = EXCLUDED.answers_total, answers_correct = EXCLUDED.answers_correct, " +
+            "lessons_completed = EXCLUDED.lessons_completed, current_streak = EXCLUDED.current_streak, " +
+            "best_streak = EXCLUDED.best_streak, last_active_date = EXCLUDED.last_active_date, " +
+            "completed_lesson_ids = EXCLUDED.completed_lesson_ids";
+
+    private final UserStatsRepository userStatsRepository;
+    private final UserProgressService userProgressService;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final CachedWriteBehindStore<UserStats> store;
+
+    public UserStatsService(UserStatsRepository userStatsRepository, UserProgressService userProgressService,
+                            JdbcTemplate jdbcTemplate, BotConfig botConfig, MeterRegistry meterRegistry) {
+        this.userStatsRepository = userStatsRepository;
+        this.userProgressService = userProgressService;
+        this.store = new CachedWriteBehindStore<>("user_stats", botConfig.getStatsMaxCachedUsers(),
+                botConfig.getStatsFlushIntervalMs(), botConfig.getStatsFlushBatchSize(),
+                jdbcTemplate, UPSERT_SQL, UserStatsService::setRow, meterRegistry);
+    }
+
+    // Статистика без ответов, если пользователь еще ничего не делал
+    public UserStats getStats(Long userId) {
+        return store.get(userId, id -> userStatsRepository.findById(id).orElseGet(() -> initialStats(id)));
+    }
+
+    public void recordLessonStarted(Long userId, Long lessonId) {
+        UserStats stats = copyOf(getStats(userId));
+        stats.setCurrentLessonId(lessonId);
+        store.put(userId, stats);
+    }
+
+    public void recordAnswer(Long userId, Long lessonId, boolean correct, boolean lessonCompleted) {
+        UserStats stats = copyOf(getStats(userId));
+        stats.setAnswersTotal(stats.getAnswersTotal() + 1);
+        if (correct) {
+            stats.setAnswersCorrect(stats.getAnswersCorrect() + 1);
+        }
+        // Засчитываем только первое прохождение урока
+        if (lessonCompleted) {
+            long[] completed = withLesson(stats.getCompletedLessonIds(), lessonId);
+            if (completed != stats.getCompletedLessonIds()) {
+                stats.setCompletedLessonIds(completed);
+                stats.setLessonsCompleted(stats.getLessonsCompleted() + 1);
+            }
+        }
+        LocalDate today = LocalDate.now(zone);
+        if (!today.equals(stats.getLastActiveDate())) {
+            boolean continued = today.minusDays(1).equals(stats.getLastActiveDate());
+            stats.setCurrentStreak(continued ? stats.getCurrentStreak() + 1 : 1);
+            stats.setBestStreak(Math.max(stats.getBestStreak(), stats.getCurrentStreak()));
+            stats.setLastActiveDate(today);
+        }
+        store.put(userId, stats);
+    }
+
+    // Серия прервана, если последний ответ был раньше вчерашнего дня
+    public int getActiveStreak(UserStats stats) {
+        LocalDate last = stats.getLastActiveDate();
+        return last != null && !last.isBefore(LocalDate.now(zone).minusDays(1)) ? stats.getCurrentStreak() : 0;
+    }
+
+    public void flush() {
+        store.flush();
+    }
+
+    public int getPendingWrites() {
+        return store.getPendingWrites();
+    }
+
+    public int getCachedUsers() {
+        return store.getCachedUsers();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        store.close();
+    }
+
+    // Для пользователей, начавших раньше появления статистики, переносим текущий урок из прогресса
+    private UserStats initialStats(Long userId) {
+        UserStats stats = new UserStats();
+        stats.setUserId(userId);
+        userProgressService.getUserProgress(userId)
+                .ifPresent(progress -> stats.setCurrentLessonId(progress.getCurrentLessonId()));
+        return stats;
+    }
+
+    // Возвращает тот же массив, если урок уже пройден, иначе новый отсортированный массив с уроком
+    private static long[] withLesson(long[] completed, long lessonId) {
+        if (completed == null) {
+            return new long[]{lessonId};
+        }
+        int position = Arrays.binarySearch(completed, lessonId);
+        if (position >= 0) {
+            return completed;
+        }
+        int insertAt = -position - 1;
+        long[] result = new long[completed.length + 1];
+        System.arraycopy(completed, 0, result, 0, insertAt);
+        result[insertAt] = lessonId;
+        System.arraycopy(completed, insertAt, result, insertAt + 1, completed.length - insertAt);
+        return result;
+    }
+
+    // Массив пройденных уроков не меняется на месте (см. withLesson), поэтому копия разделяет его
+    private static UserStats copyOf(UserStats stats) {
+        return new UserStats(stats.getUserId(), stats.getCurrentLessonId(), stats.getAnswersTotal(),
+                stats.getAnswersCorrect(), stats.getLessonsCompleted(), stats.getCurrentStreak(),
+                stats.getBestStreak(), stats.getLastActiveDate(), stats.getCompletedLessonIds());
+    }
+
+    private static void setRow(PreparedStatement ps, UserStats stats) throws SQLException {
+        ps.setLong(1, stats.getUserId());
+        CachedWriteBehindStore.setNullableLong(ps, 2, stats.getCurrentLessonId());
+        ps.setLong(3, stats.getAnswersTotal());
+        ps.setLong(4, stats.getAnswersCorrect());
+        ps.setLong(5, stats.getLessonsCompleted());
+        ps.setInt(6, stats.getCurrentStreak());
+        ps.setInt(7, stats.getBestStreak());
+        LocalDate lastActiveDate = stats.getLastActiveDate();
+        if (lastActiveDate != null) {
+            ps.setDate(8, Date.valueOf(lastActiveDate));
+        } else {
+            ps.setNull(8, Types.DATE);
+        }
+        long[] completed = stats.getCompletedLessonIds();
+        if (completed != null) {
+            ps.setArray(9, ps.getConnection().createArrayOf("bigint", Arrays.stream(completed).boxed().toArray()));
+        } else {
+            ps.setNull(9, Types.ARRAY);
+        }
+    }
+}
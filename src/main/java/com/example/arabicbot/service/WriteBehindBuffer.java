@@ -0,0 +1,142 @@
+package com.example.arabicbot.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Отложенная запись с объединением: для каждого ключа хранится только последнее значение,
+// накопленное сбрасывается пачками не реже раза в flushIntervalMs или сразу, как только
+// набралось maxBatchSize ключей. Если запись пачки упала, значения остаются и уйдут со следующим сбросом.
+@Slf4j
+public class WriteBehindBuffer<K, V> implements AutoCloseable {
+
+    private final String name;
+    private final int maxBatchSize;
+    private final Consumer<List<V>> writer;
+    private final Map<K, V> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+
+    private final LongAdder coalescedWrites = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder writtenRows = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+
+    public WriteBehindBuffer(String name, long flushIntervalMs, int maxBatchSize, Consumer<List<V>> writer) {
+        this.name = name;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.writer = writer;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(10, flushIntervalMs);
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void put(K key, V value) {
+        if (pending.put(key, value) != null) {
+            coalescedWrites.increment();
+        }
+        if (pending.size() >= maxBatchSize && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    // Незаписанное значение ключа, если есть
+    public V getPending(K key) {
+        return pending.get(key);
+    }
+
+    // Синхронно записывает все накопленное. Выбрасывает исключение, если пачка не записалась.
+    public void flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            List<Map.Entry<K, V>> batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+            for (Map.Entry<K, V> entry : pending.entrySet()) {
+                batch.add(Map.entry(entry.getKey(), entry.getValue()));
+                if (batch.size() == maxBatchSize) {
+                    writeBatch(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getCoalescedWrites() {
+        return coalescedWrites.sum();
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    public long getWrittenRows() {
+        return writtenRows.sum();
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes.sum();
+    }
+
+    // Останавливает фоновые сбросы и дописывает все, что осталось
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to drain {} pending {} writes on shutdown", pending.size(), name, e);
+        }
+    }
+
+    private void writeBatch(List<Map.Entry<K, V>> batch) {
+        List<V> values = new ArrayList<>(batch.size());
+        for (Map.Entry<K, V> entry : batch) {
+            values.add(entry.getValue());
+        }
+        try {
+            writer.accept(values);
+        } catch (RuntimeException e) {
+            failedFlushes.increment();
+            throw e;
+        }
+        flushes.increment();
+        writtenRows.add(values.size());
+        // Убираем только то, что записали: более новое значение ключа дождется следующего сброса
+        for (Map.Entry<K, V> entry : batch) {
+            pending.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush {} pending {} writes, will retry", pending.size(), name, e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.arabicbot.handler;
+
+import com.example.arabicbot.service.LessonEditState;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CallbackCodecTest {
+
+    private final CallbackCodec codec = new CallbackCodec();
+    private final DecodedCallback decoded = new DecodedCallback();
+
+    @Test
+    void everyActionRoundTrips() {
+        for (CallbackAction action : CallbackAction.values()) {
+            long[] args = sampleArgs(action, 1000);
+            assertTrue(codec.decode(encode(action, args), decoded), action.name());
+            assertEquals(action, decoded.getAction());
+            assertFalse(decoded.isLegacy());
+            for (int i = 0; i < args.length; i++) {
+                assertEquals(args[i], decoded.getLong(i), action + " argument " + i);
+            }
+        }
+    }
+
+    @Test
+    void permutationRankAndUnrankCoverAllOrders() {
+        Set<Integer> ranks = new HashSet<>();
+        for (int a = 0; a < 4; a++) {
+            for (int b = 0; b < 4; b++) {
+                for (int c = 0; c < 4; c++) {
+                    int d = 6 - a - b - c;
+                    if (a == b || a == c || b == c || d < 0 || d > 3 || d == a || d == b || d == c) {
+                        continue;
+                    }
+                    int[] order = {a, b, c, d};
+                    int rank = CallbackCodec.permutationIndex(order);
+                    assertTrue(rank >= 0 && rank < CallbackCodec.PERMUTATIONS);
+                    assertTrue(ranks.add(rank), "duplicate rank " + rank);
+                    for (int position = 0; position < order.length; position++) {
+                        assertEquals(order[position], CallbackCodec.permutationElement(rank, position));
+                    }
+                }
+            }
+        }
+        assertEquals(CallbackCodec.PERMUTATIONS, ranks.size());
+    }
+
+    @Test
+    void largestArgumentsFitTelegramLimit() {
+        for (CallbackAction action : CallbackAction.values()) {
+            String data = encode(action, sampleArgs(action, Long.MAX_VALUE));
+            assertTrue(data.getBytes(StandardCharsets.UTF_8).length <= CallbackCodec.MAX_LENGTH, action.name());
+            assertTrue(codec.decode(data, decoded), action.name());
+        }
+    }
+
+    @Test
+    void rejectsMalformedCompactData() {
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(CallbackAction.LESSON));
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(CallbackAction.LESSON, -1));
+        assertFalse(codec.decode("~", decoded));
+        assertFalse(codec.decode("~l", decoded));
+        assertFalse(codec.decode("~?A", decoded));
+        assertFalse(codec.decode("~lg", decoded)); // оборванный varint
+        assertFalse(codec.decode(codec.encode(CallbackAction.LESSON, 7) + "A", decoded));
+        assertFalse(codec.decode(codec.answer(1, 2, 3, 0).substring(0, 5) + "Y", decoded)); // перестановка 24
+    }
+
+    @Test
+    void rejectsEnumCodesOutOfRange() {
+        long listTypes = CallbackCodec.LIST_TYPES.length;
+        long editActions = CallbackCodec.EDIT_ACTIONS.length;
+        // encode не проверяет коды, поэтому так можно собрать подделанную кнопку
+        assertFalse(codec.decode(codec.encode(CallbackAction.LESSONS_PAGE, listTypes, 0), decoded));
+        assertFalse(codec.decode(codec.encode(CallbackAction.LESSONS_PAGE, 7, 0), decoded));
+        assertFalse(codec.decode(codec.encode(CallbackAction.EDIT_ACTION, editActions, 5), decoded));
+
+        assertTrue(codec.decode(codec.encode(CallbackAction.LESSONS_PAGE, listTypes - 1, 0), decoded));
+        assertEquals(CallbackCodec.LIST_TYPES[(int) listTypes - 1], decoded.getListType(0));
+        assertTrue(codec.decode(codec.encode(CallbackAction.EDIT_ACTION, editActions - 1, 5), decoded));
+        assertEquals(CallbackCodec.EDIT_ACTIONS[(int) editActions - 1], decoded.getEditAction(0));
+    }
+
+    @Test
+    void decodesLegacyButtons() {
+        assertTrue(codec.decode("answer:11:22:33:40,41,42,43", decoded));
+        assertTrue(decoded.isLegacy());
+        assertEquals(CallbackAction.ANSWER, decoded.getAction());
+        assertEquals(11, decoded.getLong(0));
+        assertEquals(22, decoded.getLong(1));
+        assertEquals(33, decoded.getLong(2));
+        assertEquals(0, decoded.getInt(3));
+
+        // answerId в порядке показа: ранг id среди четырех — индекс ответа
+        assertTrue(codec.decode("answer:11:22:33:43,41,42,40", decoded));
+        assertEquals(CallbackCodec.permutationIndex(new int[]{3, 1, 2, 0}), decoded.getInt(3));
+
+        // Без порядка ответов — исходный порядок
+        assertTrue(codec.decode("answer:11:22:33", decoded));
+        assertEquals(-1, decoded.getLong(3));
+
+        assertTrue(codec.decode("lessons_page:admin:3", decoded));
+        assertEquals("admin", decoded.getListType(0));
+        assertEquals(3, decoded.getInt(1));
+
+        assertTrue(codec.decode("edit_action:correct:5", decoded));
+        assertEquals(LessonEditState.EditAction.CHANGE_CORRECT_ANSWER, decoded.getEditAction(0));
+        assertEquals(5, decoded.getLong(1));
+
+        assertTrue(codec.decode("next_lesson", decoded));
+        assertEquals(CallbackAction.NEXT_LESSON, decoded.getAction());
+
+        // Повторяющиеся id — порядок не разобран, кнопка остается рабочей
+        assertTrue(codec.decode("answer:1:2:3:4,4,5,6", decoded));
+        assertEquals(-1, decoded.getLong(3));
+
+        assertFalse(codec.decode("lesson:abc", decoded));
+        assertFalse(codec.decode("unknown:1", decoded));
+        assertEquals(2, codec.getInvalidCallbacks());
+    }
+
+    // Допустимые значения аргументов действия: перечисления и перестановка берутся по модулю
+    private static long[] sampleArgs(CallbackAction action, long base) {
+        long[] args = new long[action.getArity()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = base - i;
+        }
+        if (action == CallbackAction.ANSWER) {
+            args[3] = CallbackCodec.PERMUTATIONS - 1;
+        } else if (action == CallbackAction.LESSONS_PAGE) {
+            args[0] = CallbackCodec.LIST_TYPES.length - 1;
+        } else if (action == CallbackAction.EDIT_ACTION) {
+            args[0] = CallbackCodec.EDIT_ACTIONS.length - 1;
+        }
+        return args;
+    }
+
+    private String encode(CallbackAction action, long[] args) {
+        return switch (args.length) {
+            case 0 -> codec.encode(action);
+            case 1 -> codec.encode(action, args[0]);
+            case 2 -> codec.encode(action, args[0], args[1]);
+            case 4 -> codec.answer(args[0], args[1], args[2], (int) args[3]);
+            default -> throw new IllegalArgumentException("Unsupported arity " + args.length);
+        };
+    }
+}
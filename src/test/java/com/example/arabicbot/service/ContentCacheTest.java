@@ -0,0 +1,115 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.entity.CacheRegions;
+import com.example.arabicbot.entity.Lesson;
+import com.example.arabicbot.entity.TestQuestion;
+import com.example.arabicbot.repository.LessonRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.example.arabicbot.service.LessonFixtures.lessonState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Повторное открытие урока и экранов редактирования обслуживается кэшем второго уровня и кэшем запросов.
+// Без общей тестовой транзакции: READ_WRITE-регионы отдают запись только транзакциям, начатым после ее записи.
+@LessonJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ContentCacheTest {
+
+    @Autowired
+    private LessonService lessonService;
+
+    @Autowired
+    private LessonRepository lessonRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long lessonId;
+
+    @BeforeEach
+    void setUp() {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        statistics = sessionFactory.getStatistics();
+        lessonId = lessonService.createLessonWithQuestion(lessonState("Урок")).id();
+        sessionFactory.getCache().evictAllRegions();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        lessonService.deleteLesson(lessonId);
+    }
+
+    @Test
+    void repeatedLessonOpenHitsNoSql() {
+        openLesson();
+        long coldStatements = statistics.getPrepareStatementCount();
+        assertTrue(coldStatements > 0);
+
+        statistics.clear();
+        openLesson();
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getCacheRegionStatistics(CacheRegions.LESSONS).getHitCount());
+        assertEquals(1, statistics.getCacheRegionStatistics(CacheRegions.LESSON_QUESTIONS).getHitCount());
+        assertEquals(3, statistics.getCacheRegionStatistics(CacheRegions.QUESTION_ANSWERS).getHitCount());
+        assertEquals(12, statistics.getCacheRegionStatistics(CacheRegions.ANSWERS).getHitCount());
+    }
+
+    @Test
+    void editingScreensAreServedFromQueryCache() {
+        Long questionId = lessonService.getAllQuestionsForLesson(lessonId).get(0).id();
+        lessonService.getAnswersForQuestion(questionId);
+        lessonService.getQuestionById(questionId);
+        assertEquals(3, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        assertEquals(3, lessonService.getAllQuestionsForLesson(lessonId).size());
+        assertEquals(4, lessonService.getAnswersForQuestion(questionId).size());
+        assertTrue(lessonService.getQuestionById(questionId).isPresent());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(3, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    void answerEditInvalidatesCachedAnswers() {
+        Long questionId = lessonService.getAllQuestionsForLesson(lessonId).get(0).id();
+        Long answerId = lessonService.getAnswersForQuestion(questionId).get(0).id();
+
+        lessonService.updateAnswerText(lessonId, answerId, "Новый ответ");
+        lessonService.updateCorrectAnswer(lessonId, questionId, 4);
+        statistics.clear();
+
+        assertEquals("Новый ответ", lessonService.getAnswersForQuestion(questionId).get(0).text());
+        assertTrue(lessonService.getAnswersForQuestion(questionId).get(3).correct());
+        // Вопросы не менялись: нативный UPDATE ответов не сбрасывает чужие результаты
+        lessonService.getAllQuestionsForLesson(lessonId);
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    // Урок со всеми вопросами и ответами в отдельной транзакции
+    private void openLesson() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Lesson lesson = lessonRepository.findById(lessonId).orElseThrow();
+            for (TestQuestion question : lesson.getQuestions()) {
+                assertEquals(4, question.getAnswers().size());
+            }
+        });
+    }
+}
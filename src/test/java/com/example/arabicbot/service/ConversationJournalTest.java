@@ -0,0 +1,221 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.config.BotConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Восстановление после перезапуска: возвращаются ровно живые сессии с последним состоянием,
+// а оборванная или поврежденная запись обрезает журнал, не роняя чтение
+class ConversationJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<ConversationJournal> journals = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        journals.forEach(ConversationJournal::shutdown);
+    }
+
+    @Test
+    void recoversLatestSnapshotsAndSkipsRemovedSessions() throws Exception {
+        ConversationJournal journal = openEmpty();
+        ConversationSession creation = creation(1L, "Урок", 2);
+        ConversationSession edit = edit(2L, 10L);
+        ConversationSession importing = new ConversationSession(3L, ConversationSession.Flow.LESSON_IMPORT,
+                new LessonImportState(), 0);
+        journal.write(creation, 1_000);
+        journal.write(edit, 1_000);
+        journal.write(importing, 1_000);
+        creation.getCreationState().setDescription("Новое описание");
+        journal.write(creation, 2_000);
+        // Надгробие после снимка
+        edit.deactivate();
+        journal.remove(edit);
+        journal.shutdown();
+
+        Map<Long, ConversationJournal.RecoveredSession> recovered = recover();
+
+        assertEquals(List.of(1L, 3L), sortedKeys(recovered));
+        ConversationJournal.RecoveredSession lesson = recovered.get(1L);
+        assertEquals(ConversationSession.Flow.LESSON_CREATION, lesson.flow());
+        assertEquals(2_000, lesson.savedAtMillis());
+        LessonCreationState state = (LessonCreationState) lesson.state();
+        assertEquals("Урок", state.getTitle());
+        assertEquals("Новое описание", state.getDescription());
+        assertEquals(2, state.getQuestions().size());
+        assertEquals("Ответ 4", state.getQuestions().get(1).getAnswers().get(3));
+        assertEquals(2, state.getQuestions().get(1).getCorrectAnswerIndex());
+        assertEquals(ConversationSession.Flow.LESSON_IMPORT, recovered.get(3L).flow());
+    }
+
+    @Test
+    void recordWithoutLengthIsTreatedAsEndOfJournal() throws Exception {
+        ConversationJournal journal = openEmpty();
+        journal.write(creation(1L, "Первый", 1), 1_000);
+        int tornOffset = journal.getJournalBytes();
+        journal.write(creation(2L, "Второй", 1), 1_000);
+        journal.shutdown();
+
+        // Сбой между записью тела и длины: на месте длины остался ноль
+        writeInt(tornOffset, 0);
+
+        assertEquals(List.of(1L), sortedKeys(recover()));
+    }
+
+    @Test
+    void truncatedFileKeepsCompleteRecords() throws Exception {
+        ConversationJournal journal = openEmpty();
+        journal.write(creation(1L, "Первый", 1), 1_000);
+        journal.write(creation(2L, "Второй", 1), 1_000);
+        int end = journal.getJournalBytes();
+        journal.shutdown();
+
+        try (FileChannel channel = FileChannel.open(journalPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(end - 3);
+        }
+
+        assertEquals(List.of(1L), sortedKeys(recover()));
+    }
+
+    @Test
+    void crcMismatchDropsTheRestOfTheJournal() throws Exception {
+        ConversationJournal journal = openEmpty();
+        journal.write(creation(1L, "Первый", 1), 1_000);
+        int corruptOffset = journal.getJournalBytes();
+        journal.write(creation(2L, "Второй", 1), 1_000);
+        journal.write(creation(3L, "Третий", 1), 1_000);
+        journal.shutdown();
+
+        // Байт тела второй записи (после длины, crc и заголовка снимка)
+        ByteBuffer bytes = ByteBuffer.allocate(1);
+        try (FileChannel channel = FileChannel.open(journalPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long offset = corruptOffset + 8 + 20;
+            channel.read(bytes, offset);
+            bytes.put(0, (byte) (bytes.get(0) ^ 0x5A)).rewind();
+            channel.write(bytes, offset);
+        }
+
+        assertEquals(List.of(1L), sortedKeys(recover()));
+    }
+
+    @Test
+    void compactionWhileAppendingKeepsExactlyLiveSessions() throws Exception {
+        ConversationJournal journal = openEmpty();
+        long compactionsBefore = journal.getCompactions();
+        Map<Long, ConversationSession> sessions = new HashMap<>();
+        // Около 4 КБ на снимок: журнал в 1 МБ заполняется несколько раз, сжатие идет в фоне
+        String description = "д".repeat(2000);
+        for (int i = 0; i < 2_000; i++) {
+            long userId = i % 20;
+            ConversationSession session = sessions.get(userId);
+            if (session != null && i % 7 == 0) {
+                session.deactivate();
+                journal.remove(session);
+                sessions.remove(userId);
+                continue;
+            }
+            if (session == null) {
+                session = creation(userId, "Урок " + userId, 0);
+                sessions.put(userId, session);
+            }
+            session.getCreationState().setDescription(description + i);
+            journal.write(session, i);
+        }
+        journal.shutdown();
+        assertTrue(journal.getCompactions() > compactionsBefore, "journal was never compacted");
+
+        Map<Long, ConversationJournal.RecoveredSession> recovered = recover();
+
+        assertEquals(sortedKeys(sessions), sortedKeys(recovered));
+        for (Map.Entry<Long, ConversationSession> entry : sessions.entrySet()) {
+            LessonCreationState state = (LessonCreationState) recovered.get(entry.getKey()).state();
+            assertEquals(entry.getValue().getCreationState().getDescription(), state.getDescription());
+        }
+    }
+
+    // Журнал после recover() пустого файла; первая запись ждет сжатия, которое создает файл
+    private ConversationJournal openEmpty() throws InterruptedException {
+        ConversationJournal journal = open();
+        journal.recover();
+        awaitCompaction(journal);
+        return journal;
+    }
+
+    private Map<Long, ConversationJournal.RecoveredSession> recover() {
+        Map<Long, ConversationJournal.RecoveredSession> sessions = new HashMap<>();
+        for (ConversationJournal.RecoveredSession session : open().recover()) {
+            sessions.put(session.userId(), session);
+        }
+        return sessions;
+    }
+
+    private ConversationJournal open() {
+        BotConfig botConfig = new BotConfig();
+        botConfig.setSessionJournalPath(journalPath().toString());
+        botConfig.setSessionJournalSizeMb(1);
+        botConfig.setSessionJournalSyncIntervalMs(60_000);
+        ConversationJournal journal = new ConversationJournal(botConfig);
+        journals.add(journal);
+        return journal;
+    }
+
+    private Path journalPath() {
+        return dir.resolve("sessions.journal");
+    }
+
+    private void writeInt(long offset, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, value), offset);
+        }
+    }
+
+    private static void awaitCompaction(ConversationJournal journal) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (journal.getCompactions() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, journal.getCompactions());
+    }
+
+    private static ConversationSession creation(Long userId, String title, int questions) {
+        LessonCreationState state = new LessonCreationState();
+        state.setTitle(title);
+        state.setDescription("Описание");
+        for (int q = 0; q < questions; q++) {
+            QuestionData question = new QuestionData();
+            question.setQuestion("Вопрос " + (q + 1));
+            for (int a = 1; a <= 4; a++) {
+                question.addAnswer("Ответ " + a);
+            }
+            question.setCorrectAnswerIndex(2);
+            state.getQuestions().add(question);
+        }
+        return new ConversationSession(userId, ConversationSession.Flow.LESSON_CREATION, state, 0);
+    }
+
+    private static ConversationSession edit(Long userId, Long lessonId) {
+        LessonEditState state = new LessonEditState();
+        state.setLessonId(lessonId);
+        return new ConversationSession(userId, ConversationSession.Flow.LESSON_EDIT, state, 0);
+    }
+
+    private static List<Long> sortedKeys(Map<Long, ?> map) {
+        return map.keySet().stream().sorted().toList();
+    }
+}
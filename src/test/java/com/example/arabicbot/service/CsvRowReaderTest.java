@@ -0,0 +1,62 @@
+package com.example.arabicbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvRowReaderTest {
+
+    @Test
+    void quotedFieldsKeepDelimitersNewlinesAndEscapedQuotes() throws IOException {
+        CsvRowReader rows = new CsvRowReader(new StringReader(
+                "a,\"b,c\",\"line1\nline2\",\"say \"\"hi\"\"\"\n"), ',');
+
+        assertEquals(List.of("a", "b,c", "line1\nline2", "say \"hi\""), rows.next());
+        assertNull(rows.next());
+    }
+
+    @Test
+    void acceptsCrLfAndBareCrLineEndings() throws IOException {
+        CsvRowReader rows = new CsvRowReader(new StringReader("a;b\r\nc;d\re;f"), ';');
+
+        assertEquals(List.of("a", "b"), rows.next());
+        assertEquals(List.of("c", "d"), rows.next());
+        assertEquals(List.of("e", "f"), rows.next());
+        assertNull(rows.next());
+    }
+
+    @Test
+    void skipsBlankLinesAndReportsStartLineOfMultilineRows() throws IOException {
+        CsvRowReader rows = new CsvRowReader(new StringReader("h\n\n\"x\ny\",z\r\n\r\nlast,\n"), ',');
+
+        assertEquals(List.of("h"), rows.next());
+        assertEquals(1, rows.getRowLine());
+        assertEquals(List.of("x\ny", "z"), rows.next());
+        assertEquals(3, rows.getRowLine());
+        // Пустое последнее поле сохраняется
+        assertEquals(List.of("last", ""), rows.next());
+        assertEquals(6, rows.getRowLine());
+        assertNull(rows.next());
+    }
+
+    @Test
+    void quoteInsideUnquotedFieldIsLiteral() throws IOException {
+        CsvRowReader rows = new CsvRowReader(new StringReader("5\" disk,ok\n"), ',');
+
+        assertEquals(List.of("5\" disk", "ok"), rows.next());
+    }
+
+    @Test
+    void unterminatedQuoteFails() {
+        CsvRowReader rows = new CsvRowReader(new StringReader("a,\"open\nnever closed"), ',');
+
+        IOException error = assertThrows(IOException.class, rows::next);
+        assertEquals("Unterminated quoted field starting at line 1", error.getMessage());
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.arabicbot.service;
+
+// Уроки для JPA-тестов: 3 вопроса по 4 ответа, у вопроса N правильный ответ N
+final class LessonFixtures {
+
+    static final int QUESTIONS = 3;
+    static final int ANSWERS = 4;
+
+    private LessonFixtures() {
+    }
+
+    static LessonCreationState lessonState(String title) {
+        LessonCreationState state = new LessonCreationState();
+        state.setTitle(title);
+        state.setDescription("Описание");
+        state.setVideoFileId("video");
+        for (int q = 0; q < QUESTIONS; q++) {
+            state.setCurrentQuestionIndex(q);
+            QuestionData question = state.getCurrentQuestion();
+            question.setQuestion("Вопрос " + (q + 1));
+            for (int a = 1; a <= ANSWERS; a++) {
+                question.addAnswer("Ответ " + a);
+            }
+            question.setCorrectAnswerIndex(q + 1);
+        }
+        return state;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.config.BotConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class LessonImportServiceTest {
+
+    private static final String CSV_HEADER =
+            "title,description,video_file_id,question,answer1,answer2,answer3,answer4,correct\n";
+
+    private final List<LessonCreationState> saved = new ArrayList<>();
+    private LessonImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        LessonService lessonService = mock(LessonService.class);
+        // Пачка очищается после сохранения, поэтому копируем ее
+        doAnswer(invocation -> {
+            List<LessonCreationState> batch = invocation.getArgument(0);
+            saved.addAll(batch);
+            return batch.size();
+        }).when(lessonService).createLessons(anyList());
+        BotConfig botConfig = new BotConfig();
+        botConfig.setImportBatchSize(500);
+        importService = new LessonImportService(lessonService, new ObjectMapper(),
+                mock(ConversationSessionStore.class), botConfig);
+    }
+
+    @AfterEach
+    void tearDown() {
+        importService.shutdown();
+    }
+
+    @Test
+    void csvWithBomSemicolonsAndQuotedFieldsIsImported() throws IOException {
+        String csv = "\uFEFF" + CSV_HEADER.replace(',', ';')
+                + "Урок;\"Описание; с разделителем\";vid;\"Вопрос\nв две строки\";a;\"b \"\"в кавычках\"\"\";c;d;2\r\n"
+                + ";;;Вопрос 2;a;b;c;d;1\r\n"
+                + ";;;Вопрос 3;a;b;c;d;4\r\n";
+
+        LessonImportService.ImportReport report = importCsv(csv);
+
+        assertEquals(1, report.imported());
+        assertEquals(0, report.rejected());
+        LessonCreationState lesson = saved.get(0);
+        assertEquals("Урок", lesson.getTitle());
+        assertEquals("Описание; с разделителем", lesson.getDescription());
+        assertEquals("Вопрос\nв две строки", lesson.getQuestions().get(0).getQuestion());
+        assertEquals("b \"в кавычках\"", lesson.getQuestions().get(0).getAnswers().get(1));
+        assertEquals(4, lesson.getQuestions().get(2).getCorrectAnswerIndex());
+    }
+
+    @Test
+    void identicalConsecutiveLessonsStaySeparate() throws IOException {
+        StringBuilder csv = new StringBuilder(CSV_HEADER);
+        for (int i = 0; i < 6; i++) {
+            csv.append("Урок,Описание,vid,Вопрос ").append(i % 3 + 1).append(",a,b,c,d,1\n");
+        }
+
+        LessonImportService.ImportReport report = importCsv(csv.toString());
+
+        assertEquals(2, report.imported());
+        assertEquals(0, report.rejected());
+    }
+
+    @Test
+    void csvRejectionsNameTheRowAndProblem() throws IOException {
+        String longTitle = "x".repeat(256);
+        String csv = CSV_HEADER
+                + "Короткая,строка\n"
+                + "Урок 1,Описание,vid,В1,a,b,c,d,5\n"
+                + ",,,В2,a,b,c,d,1\n"
+                + ",,,В3,a,b,c,d,1\n"
+                + longTitle + ",Описание,vid,В1,a,b,c,d,1\n"
+                + ",,,В2,a,b,c,d,1\n"
+                + ",,,В3,a,b,c,d,1\n"
+                + "Урок 3,Описание,vid,В1,a,,c,d,1\n"
+                + ",,,В2,a,b,c,d,1\n";
+
+        LessonImportService.ImportReport report = importCsv(csv);
+
+        assertEquals(0, report.imported());
+        assertEquals(List.of(
+                "Строка 2: ожидается 9 колонок, найдено 2",
+                "Строка 3: вопрос 1: номер правильного ответа должен быть от 1 до 4",
+                "Строка 6: название длиннее 255 символов",
+                "Строка 9: нужно 3 вопроса, найдено 2"), report.errors());
+    }
+
+    @Test
+    void jsonArrayAndWrappedObjectAreAccepted() throws IOException {
+        String lesson = jsonLesson("Урок", 3);
+
+        assertEquals(1, importJson("[" + lesson + "]").imported());
+        assertEquals(1, importJson("{\"version\": 1, \"lessons\": [" + lesson + "]}").imported());
+    }
+
+    @Test
+    void jsonRejectionsNameTheLessonAndProblem() throws IOException {
+        String json = "[\n1,\n" + jsonLesson(null, 3) + ",\n" + jsonLesson("Урок", 2) + "\n]";
+
+        LessonImportService.ImportReport report = importJson(json);
+
+        assertEquals(0, report.imported());
+        assertEquals(List.of(
+                "Урок №1 (строка 2): ожидается объект урока",
+                "Урок №2 (строка 3): нет названия",
+                "Урок №3 (строка 4): нужно 3 вопроса, найдено 2"), report.errors());
+    }
+
+    @Test
+    void jsonWithoutLessonArrayFails() {
+        IOException error = assertThrows(IOException.class, () -> importJson("{\"items\": []}"));
+        assertEquals("Expected a JSON array of lessons", error.getMessage());
+    }
+
+    @Test
+    void validateChecksAnswerShapeAndLength() {
+        LessonCreationState state = LessonFixtures.lessonState("Урок");
+        assertNull(LessonImportService.validate(state));
+
+        state.getQuestions().get(1).getAnswers().set(2, "x".repeat(501));
+        assertEquals("вопрос 2: ответ 3 длиннее 500 символов", LessonImportService.validate(state));
+
+        state.getQuestions().get(1).getAnswers().remove(2);
+        assertEquals("вопрос 2: нужно 4 ответа, найдено 3", LessonImportService.validate(state));
+    }
+
+    private LessonImportService.ImportReport importCsv(String csv) throws IOException {
+        return importService.importLessons(stream(csv), LessonImportService.Format.CSV, imported -> { });
+    }
+
+    private LessonImportService.ImportReport importJson(String json) throws IOException {
+        return importService.importLessons(stream(json), LessonImportService.Format.JSON, imported -> { });
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String jsonLesson(String title, int questions) {
+        StringBuilder json = new StringBuilder("{");
+        if (title != null) {
+            json.append("\"title\": \"").append(title).append("\", ");
+        }
+        json.append("\"description\": \"Описание\", \"videoFileId\": \"vid\", \"questions\": [");
+        for (int q = 0; q < questions; q++) {
+            json.append(q > 0 ? ", " : "").append("{\"question\": \"В").append(q + 1)
+                    .append("\", \"answers\": [\"a\", \"b\", \"c\", \"d\"], \"correctAnswerIndex\": 1}");
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.arabicbot.service;
+
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Общая конфигурация JPA-тестов контента: H2, статистика Hibernate для подсчета запросов и попаданий в кэш,
+// LessonService с заглушкой каталога. Дополнительные сервисы тест подключает своим @Import
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@Import(LessonService.class)
+@MockitoBean(types = LessonCatalog.class)
+@interface LessonJpaTest {
+}
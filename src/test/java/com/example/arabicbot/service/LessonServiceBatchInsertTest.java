@@ -0,0 +1,52 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.dto.LessonView;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import static com.example.arabicbot.service.LessonFixtures.lessonState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@LessonJpaTest
+class LessonServiceBatchInsertTest {
+
+    @Autowired
+    private LessonService lessonService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void lessonAggregateIsInsertedWithOneBatchPerTable() {
+        // Прогреваем пулы id: первое значение новой последовательности дает блок из одного id
+        lessonService.createLessonWithQuestion(lessonState("Урок 1"));
+        lessonService.createLessonWithQuestion(lessonState("Урок 2"));
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        LessonView lesson = lessonService.createLessonWithQuestion(lessonState("Урок 3"));
+        entityManager.flush();
+
+        assertNotNull(lesson.id());
+        assertEquals(1 + 3 + 3 * 4, statistics.getEntityInsertCount());
+        // lessons, test_questions, test_answers — по одному пакетному INSERT, без запросов к последовательностям
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.arabicbot.service;
+
+import com.example.arabicbot.dto.AnswerView;
+import com.example.arabicbot.dto.LessonView;
+import com.example.arabicbot.dto.QuestionView;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static com.example.arabicbot.service.LessonFixtures.lessonState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+// Бюджеты запросов для путей теста: превышение означает N+1 или лишнюю загрузку
+@LessonJpaTest
+@Import(QuizPlanService.class)
+class QuizQueryBudgetTest {
+
+    @Autowired
+    private LessonService lessonService;
+
+    @Autowired
+    private QuizPlanService quizPlanService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private LessonCatalog lessonCatalog;
+
+    private Statistics statistics;
+    private Long lessonId;
+    private Long firstQuestionId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        lessonId = lessonService.createLessonWithQuestion(lessonState("Урок")).id();
+        entityManager.flush();
+        entityManager.clear();
+        firstQuestionId = lessonService.getAllQuestionsForLesson(lessonId).get(0).id();
+        when(lessonCatalog.snapshot()).thenReturn(new CatalogSnapshot(1,
+                List.of(new LessonView(lessonId, "Урок", "Описание", "video"))));
+        // Бюджеты считаются для холодного кэша второго уровня
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAllRegions();
+        statistics.clear();
+    }
+
+    @Test
+    void quizPlanLoadsQuestionsAndAnswersInOneQuery() {
+        QuizPlan plan = quizPlanService.getPlan(lessonId);
+
+        assertEquals(3, plan.getQuestionCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        // Ответы в плане идут в порядке id, как их создавал урок
+        assertEquals("Ответ 1", plan.getAnswerText(0, 0));
+        assertEquals(2, plan.getCorrectAnswerIndex(2));
+
+        // Повторные ответы на вопросы урока идут из кэша плана
+        statistics.clear();
+        quizPlanService.getPlan(lessonId);
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void planOfUnknownLessonIsNotCached() {
+        int cached = quizPlanService.getCachedPlans();
+
+        assertEquals(0, quizPlanService.getPlan(lessonId + 1000).getQuestionCount());
+        assertEquals(cached, quizPlanService.getCachedPlans());
+    }
+
+    @Test
+    void questionListForEditingIsOneProjectionQuery() {
+        List<QuestionView> questions = lessonService.getAllQuestionsForLesson(lessonId);
+
+        assertEquals(3, questions.size());
+        assertEquals("Вопрос 1", questions.get(0).question());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        // Проекция не создает управляемых сущностей
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void answersForQuestionAreOneProjectionQuery() {
+        List<AnswerView> answers = lessonService.getAnswersForQuestion(firstQuestionId);
+
+        assertEquals(4, answers.size());
+        assertEquals("Ответ 1", answers.get(0).text());
+        assertTrue(answers.get(0).correct());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+}